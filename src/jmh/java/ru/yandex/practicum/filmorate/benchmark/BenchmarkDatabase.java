@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.film.impl.LikeCountReconciler;
+
+final class BenchmarkDatabase {
+
+    private static final String INSERT_FILMS = "INSERT INTO films (name, description, release_date, duration, " +
+            "rating_id) SELECT 'film ' || X, 'description ' || X, DATEADD('DAY', MOD(X, 40000), DATE '1900-01-01'), " +
+            "60 + MOD(X, 120), 1 + MOD(X, 5) FROM SYSTEM_RANGE(?, ?)";
+    private static final String INSERT_USERS = "INSERT INTO users (email, login, name, birthday) " +
+            "SELECT 'user' || X || '@mail.com', 'user' || X, 'user ' || X, " +
+            "DATEADD('DAY', MOD(X, 20000), DATE '1950-01-01') FROM SYSTEM_RANGE(?, ?)";
+    private static final String INSERT_GENRES = "INSERT INTO film_genre (film_id, genre_id) " +
+            "SELECT f.X, 1 + MOD(f.X * g.X, 6) FROM SYSTEM_RANGE(?, ?) AS f, SYSTEM_RANGE(1, 2) AS g " +
+            "ON CONFLICT DO NOTHING";
+    // Куб случайного числа дает длинный хвост: немногие фильмы собирают большую часть лайков.
+    // Время лайков равномерно распределено по двум последним неделям
+    private static final String INSERT_LIKES = "INSERT INTO film_likes (film_id, user_id, created_at) " +
+            "SELECT 1 + CAST(FLOOR(POWER(RAND(), 3) * ?) AS INTEGER), u.X, " +
+            "DATEADD('MINUTE', -CAST(FLOOR(RAND() * 20160) AS INTEGER), CURRENT_TIMESTAMP) " +
+            "FROM SYSTEM_RANGE(?, ?) AS u, SYSTEM_RANGE(1, 5) AS k ON CONFLICT DO NOTHING";
+    // Друзья выбираются из сотни соседних id, чтобы у соседей были общие друзья
+    private static final String INSERT_FRIENDS = "INSERT INTO user_friends (user_id, friend_id) " +
+            "SELECT u.X, 1 + MOD(u.X + CAST(FLOOR(RAND() * 100) AS INTEGER), ?) FROM SYSTEM_RANGE(?, ?) AS u, " +
+            "SYSTEM_RANGE(1, 10) AS k ON CONFLICT DO NOTHING";
+    // Одна вставка на миллион строк не помещается в память H2, поэтому база заполняется порциями
+    private static final int CHUNK = 100_000;
+
+    private BenchmarkDatabase() {
+    }
+
+    // База на каждый размер создается в target/jmh один раз и переиспользуется следующими запусками
+    static ConfigurableApplicationContext start(int size) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--spring.datasource.url=jdbc:h2:file:./target/jmh/filmorate-" + size + ";MODE=PostgreSQL;",
+                        "--logging.level.root=warn",
+                        "--logging.level.ru.yandex.practicum.filmorate=warn");
+        JdbcTemplate template = context.getBean(JdbcTemplate.class);
+        Integer films = template.queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+        if (films == null || films == 0) {
+            for (int from = 1; from <= size; from += CHUNK) {
+                int to = Math.min(from + CHUNK - 1, size);
+                template.update(INSERT_FILMS, from, to);
+                template.update(INSERT_USERS, from, to);
+            }
+            for (int from = 1; from <= size; from += CHUNK) {
+                int to = Math.min(from + CHUNK - 1, size);
+                template.update(INSERT_GENRES, from, to);
+                template.update(INSERT_LIKES, size, from, to);
+                template.update(INSERT_FRIENDS, size, from, to);
+            }
+            // Заодно перестраивает матрицу лайков, загруженную при старте из пустой базы
+            context.getBean(LikeCountReconciler.class).reconcile();
+        }
+        return context;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Одна операция - пачка из concurrency одновременных запросов к запущенному серверу:
+// сервлетный стек упирается в пул потоков Tomcat, реактивный обслуживает их на нескольких потоках Netty
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrencyBenchmark {
+
+    private static final int SIZE = 1000;
+
+    @Param({"servlet", "reactive"})
+    private String stack;
+
+    @Param({"64", "512", "2048"})
+    private int concurrency;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.start(SIZE).close();
+        String database = "./target/jmh/filmorate-" + SIZE;
+        List<String> args = new ArrayList<>(List.of("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:file:" + database + ";MODE=PostgreSQL;",
+                "--logging.level.root=warn",
+                "--logging.level.ru.yandex.practicum.filmorate=warn"));
+        if ("reactive".equals(stack)) {
+            // Без JDBC DataSource миграции запускаются через отдельное подключение Flyway
+            args.add("--spring.profiles.active=reactive");
+            args.add("--spring.flyway.url=jdbc:h2:file:" + database + ";MODE=PostgreSQL;");
+            args.add("--spring.r2dbc.url=r2dbc:h2:file:///" + database + "?options=DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        }
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args.toArray(new String[0]));
+        String port = context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/films/popular?count=10"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int popular() {
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        int bytes = 0;
+        for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+            bytes += response.join().body().length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmTrending;
+import ru.yandex.practicum.filmorate.storage.film.impl.LikeMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private FilmDbStorage filmStorage;
+    private FilmService filmService;
+    private LikeMatrix likeMatrix;
+    private FilmTrending trending;
+    private List<Film> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(size);
+        filmStorage = context.getBean(FilmDbStorage.class);
+        filmService = context.getBean(FilmService.class);
+        likeMatrix = context.getBean(LikeMatrix.class);
+        trending = context.getBean(FilmTrending.class);
+        page = filmStorage.get(0L, 100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Film> storageGetPopular() {
+        return filmStorage.getPopular(10);
+    }
+
+    // Любое сочетание фильтров: каждый задан или нет с вероятностью 1/2
+    @Benchmark
+    public List<Film> storageGetPopularFiltered() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmStorage.getPopular(10,
+                random.nextBoolean() ? random.nextInt(1, 7) : null,
+                random.nextBoolean() ? random.nextInt(1, 6) : null,
+                random.nextBoolean() ? random.nextInt(1900, 2010) : null);
+    }
+
+    @Benchmark
+    public List<Film> storageGet() {
+        return filmStorage.get();
+    }
+
+    @Benchmark
+    public List<Film> storageSetFilmGenre() {
+        filmStorage.setFilmGenre(page);
+        return page;
+    }
+
+    @Benchmark
+    public void storageAddLike() {
+        filmStorage.addLike(randomId(), randomId());
+    }
+
+    @Benchmark
+    public List<Long> matrixRecommend() {
+        return likeMatrix.recommend(randomId(), 10);
+    }
+
+    @Benchmark
+    public List<Long> trendingDay() {
+        return trending.getTrending(FilmTrending.Window.DAY, 10);
+    }
+
+    @Benchmark
+    public List<Film> serviceGetPopular() {
+        return filmService.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> serviceGet() {
+        return filmService.get();
+    }
+
+    // Сто случайных фильмов вместо ста запросов /films/{id}
+    @Benchmark
+    public List<Film> serviceGetByIds() {
+        List<Long> ids = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            ids.add(randomId());
+        }
+        return filmService.getByIds(ids);
+    }
+
+    @Benchmark
+    public List<Film> serviceGetRecommendations() {
+        return filmService.getRecommendations(randomId(), 10);
+    }
+
+    @Benchmark
+    public List<Film> serviceGetTrending() {
+        return filmService.getTrendingFilms("24h", 10);
+    }
+
+    @Benchmark
+    public void serviceAddLike() {
+        filmService.add(randomId(), randomId());
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+}
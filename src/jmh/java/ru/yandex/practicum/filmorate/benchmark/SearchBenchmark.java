@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmSearchIndex;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private FilmSearchIndex searchIndex;
+    private FilmService filmService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(size);
+        searchIndex = context.getBean(FilmSearchIndex.class);
+        filmService = context.getBean(FilmService.class);
+        // Индекс построен при старте, до заполнения новой базы
+        searchIndex.rebuild();
+        log.info("Поисковый индекс: {}", searchIndex.stats());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Номер фильма встречается в названии и описании одного фильма, а его начало - префикс многих термов
+    @Benchmark
+    public List<Long> indexSearchRare() {
+        return searchIndex.search(String.valueOf(randomId()), 10);
+    }
+
+    @Benchmark
+    public List<Long> indexSearchPrefix() {
+        return searchIndex.search(String.valueOf(randomId()).substring(0, 2), 10);
+    }
+
+    // Слово "film" есть в каждом фильме: его список длиннее порога обхода и только добавляет вес найденным
+    @Benchmark
+    public List<Long> indexSearchCommon() {
+        return searchIndex.search("film " + randomId(), 10);
+    }
+
+    @Benchmark
+    public List<Film> serviceSearch() {
+        return filmService.search(String.valueOf(randomId()), 10);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(10, size + 1);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.impl.FriendSuggestions;
+import ru.yandex.practicum.filmorate.storage.user.impl.UserDbStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private UserDbStorage userStorage;
+    private UserService userService;
+    private FriendSuggestions friendSuggestions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(size);
+        userStorage = context.getBean(UserDbStorage.class);
+        userService = context.getBean(UserService.class);
+        friendSuggestions = context.getBean(FriendSuggestions.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<User> storageGetFriends() {
+        return userStorage.getFriends(randomId());
+    }
+
+    @Benchmark
+    public List<User> storageGetCommonFriends() {
+        long id = randomId();
+        return userStorage.getCommonFriends(id, id % size + 1);
+    }
+
+    @Benchmark
+    public List<User> serviceGetFriends() {
+        return userService.getFriends(randomId());
+    }
+
+    @Benchmark
+    public List<User> serviceGetCommonFriends() {
+        long id = randomId();
+        return userService.getCommonFriends(id, id % size + 1);
+    }
+
+    @Benchmark
+    public List<User> serviceGetFriendSuggestions() {
+        return userService.getFriendSuggestions(randomId(), 10);
+    }
+
+    // Обход двух шагов без кэша: сброс перед каждым вызовом
+    @Benchmark
+    public List<Long> friendSuggestionsUncached() {
+        long id = randomId();
+        friendSuggestions.friendsChanged(id);
+        return friendSuggestions.suggest(id, 10, userStorage::getFriendIds);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+}
@@ -1,26 +1,69 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 public class FilmController {
 
     private final FilmService filmService;
+    private final JsonStreams jsonStreams;
+    private final EntityVersions versions;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, JsonStreams jsonStreams, EntityVersions versions) {
         this.filmService = filmService;
+        this.jsonStreams = jsonStreams;
+        this.versions = versions;
     }
 
     @GetMapping("/films")
-    public List<Film> getFilms() {
-        return filmService.get();
+    public ResponseEntity<List<Film>> getFilms(@RequestParam(required = false) Long after,
+                                               @RequestParam(required = false) Integer limit,
+                                               WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.FILMS))) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(filmService.get());
+        }
+        int pageSize = limit == null ? PageResponses.DEFAULT_PAGE_SIZE : limit;
+        return PageResponses.of(filmService.get(after == null ? 0L : after, pageSize), pageSize, Film::getId);
+    }
+
+    @GetMapping(value = "/films", params = "ids")
+    public ResponseEntity<List<Film>> getFilmsByIds(@RequestParam List<Long> ids, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.FILMS))) {
+            return null;
+        }
+        return PageResponses.byIds(filmService.getByIds(ids), ids, Film::getId);
+    }
+
+    @GetMapping(value = "/films", params = "stream=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamFilms() {
+        return jsonStreams.ndjson(filmService::stream);
+    }
+
+    @GetMapping(value = "/films", params = "stream=json")
+    public ResponseEntity<StreamingResponseBody> streamFilmsArray() {
+        return jsonStreams.array(filmService::stream);
     }
 
     @PostMapping("/films")
@@ -28,13 +71,36 @@ public class FilmController {
         return filmService.add(film);
     }
 
+    @PostMapping(value = "/films/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ImportResult> importFilms(@RequestBody List<Film> films) {
+        return filmService.addAll(films);
+    }
+
+    @PostMapping(value = "/films/import", consumes = JsonStreams.NDJSON)
+    public List<ImportResult> importFilmsNdjson(InputStream body) throws IOException {
+        return filmService.addAll(jsonStreams.read(body, Film.class));
+    }
+
+    @PostMapping(value = "/films/likes/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ImportResult> importLikes(@RequestBody List<FilmLike> likes) {
+        return filmService.addLikes(likes);
+    }
+
+    @PostMapping(value = "/films/likes/import", consumes = JsonStreams.NDJSON)
+    public List<ImportResult> importLikesNdjson(InputStream body) throws IOException {
+        return filmService.addLikes(jsonStreams.read(body, FilmLike.class));
+    }
+
     @PutMapping("/films")
     public Film updateFilm(@Valid @RequestBody Film film) {
         return filmService.update(film);
     }
 
     @GetMapping("/films/{id}")
-    public Film getFilm(@PathVariable Long id) {
+    public Film getFilm(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.FILMS))) {
+            return null;
+        }
         return filmService.getById(id);
     }
 
@@ -48,9 +114,32 @@ public class FilmController {
         filmService.remove(id, userId);
     }
 
+    @GetMapping("/films/search")
+    public List<Film> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit,
+                             WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.FILMS))) {
+            return null;
+        }
+        return filmService.search(q, limit);
+    }
+
     @GetMapping("/films/popular")
-    public List<Film> getPopular(@RequestParam(defaultValue = "10") int count) {
-        return filmService.getPopularFilms(count);
+    public List<Film> getPopular(@RequestParam(defaultValue = "10") int count,
+                                 @RequestParam(required = false) Integer genreId,
+                                 @RequestParam(required = false) Integer mpa,
+                                 @RequestParam(required = false) Integer year,
+                                 WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.FILMS, Entity.LIKES))) {
+            return null;
+        }
+        return filmService.getPopularFilms(count, genreId, mpa, year);
+    }
+
+    // Окно сдвигается со временем без изменения версий, поэтому условные запросы здесь не поддерживаются
+    @GetMapping("/films/trending")
+    public List<Film> getTrending(@RequestParam(defaultValue = "24h") String window,
+                                  @RequestParam(defaultValue = "10") int count) {
+        return filmService.getTrendingFilms(window, count);
     }
 
 }
@@ -1,29 +1,42 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
 import ru.yandex.practicum.filmorate.service.FilmGenreService;
 
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 public class FilmGenreController {
 
     private final FilmGenreService service;
+    private final EntityVersions versions;
 
-    public FilmGenreController(FilmGenreService service) {
+    public FilmGenreController(FilmGenreService service, EntityVersions versions) {
         this.service = service;
+        this.versions = versions;
     }
 
     @GetMapping("/genres/{id}")
-    public FilmGenre getGenreById(@PathVariable Integer id) {
+    public FilmGenre getGenreById(@PathVariable Integer id, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.GENRES))) {
+            return null;
+        }
         return service.getGenreById(id);
     }
 
     @GetMapping("/genres")
-    public List<FilmGenre> getGenres() {
+    public List<FilmGenre> getGenres(WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.GENRES))) {
+            return null;
+        }
         return service.getGenres();
     }
 }
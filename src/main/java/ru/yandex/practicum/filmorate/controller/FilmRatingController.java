@@ -1,29 +1,42 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
 import ru.yandex.practicum.filmorate.service.FilmRatingService;
 
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 public class FilmRatingController {
 
     private final FilmRatingService service;
+    private final EntityVersions versions;
 
-    public FilmRatingController(FilmRatingService service) {
+    public FilmRatingController(FilmRatingService service, EntityVersions versions) {
         this.service = service;
+        this.versions = versions;
     }
 
     @GetMapping("/mpa/{id}")
-    public FilmRating getRatingById(@PathVariable Integer id) {
+    public FilmRating getRatingById(@PathVariable Integer id, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.RATINGS))) {
+            return null;
+        }
         return service.getRatingById(id);
     }
 
     @GetMapping("/mpa")
-    public List<FilmRating> getRatings() {
+    public List<FilmRating> getRatings(WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.RATINGS))) {
+            return null;
+        }
         return service.getRatings();
     }
 }
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Component
+@Profile("!reactive")
+public class JsonStreams {
+
+    static final String NDJSON = "application/x-ndjson";
+    private static final int FLUSH_EVERY = 1000;
+
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    public JsonStreams(ObjectMapper mapper) {
+        this.writer = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.reader = mapper.reader();
+    }
+
+    <T> List<T> read(InputStream in, Class<T> type) throws IOException {
+        try (MappingIterator<T> values = reader.forType(type).readValues(in)) {
+            return values.readAll();
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Некорректная строка NDJSON: " + e.getOriginalMessage());
+        }
+    }
+
+    <T> ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<T>> source) {
+        ObjectWriter lines = writer.withRootValueSeparator("\n");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(out -> {
+                    try (SequenceWriter sequence = lines.writeValues(out)) {
+                        write(sequence, source);
+                    }
+                    out.write('\n');
+                });
+    }
+
+    <T> ResponseEntity<StreamingResponseBody> array(Consumer<Consumer<T>> source) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (SequenceWriter sequence = writer.writeValuesAsArray(out)) {
+                        write(sequence, source);
+                    }
+                });
+    }
+
+    private <T> void write(SequenceWriter sequence, Consumer<Consumer<T>> source) {
+        AtomicLong written = new AtomicLong();
+        source.accept(value -> {
+            try {
+                sequence.write(value);
+                // Первую запись и далее каждую тысячу отправляем клиенту сразу, не дожидаясь конца выборки
+                if (written.getAndIncrement() % FLUSH_EVERY == 0) {
+                    sequence.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
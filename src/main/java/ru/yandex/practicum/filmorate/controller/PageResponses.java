@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+final class PageResponses {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    private PageResponses() {
+    }
+
+    static <T> ResponseEntity<List<T>> of(List<T> page, int pageSize, Function<T, Long> id) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!page.isEmpty() && page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(id.apply(page.get(page.size() - 1))));
+        }
+        return response.body(page);
+    }
+
+    // Не найденные id перечисляются в заголовке в порядке запроса, без повторов
+    static <T> ResponseEntity<List<T>> byIds(List<T> found, List<Long> ids, Function<T, Long> id) {
+        Set<Long> foundIds = new HashSet<>();
+        found.forEach(item -> foundIds.add(id.apply(item)));
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long requested : ids) {
+            if (!foundIds.contains(requested)) {
+                missing.add(requested);
+            }
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!missing.isEmpty()) {
+            response.header(MISSING_IDS_HEADER, missing.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(",")));
+        }
+        return response.body(found);
+    }
+}
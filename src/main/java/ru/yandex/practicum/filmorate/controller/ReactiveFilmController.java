@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
+import ru.yandex.practicum.filmorate.service.ReactiveFilmService;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+public class ReactiveFilmController {
+
+    private final ReactiveFilmService filmService;
+    private final EntityVersions versions;
+
+    public ReactiveFilmController(ReactiveFilmService filmService, EntityVersions versions) {
+        this.filmService = filmService;
+        this.versions = versions;
+    }
+
+    @GetMapping("/films")
+    public Mono<ResponseEntity<List<Film>>> getFilms(@RequestParam(required = false) Long after,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.FILMS))) {
+            return Mono.empty();
+        }
+        if (after == null && limit == null) {
+            return filmService.get().map(ResponseEntity::ok);
+        }
+        int pageSize = limit == null ? PageResponses.DEFAULT_PAGE_SIZE : limit;
+        return filmService.get(after == null ? 0L : after, pageSize)
+                .map(films -> PageResponses.of(films, pageSize, Film::getId));
+    }
+
+    @PostMapping("/films")
+    public Mono<Film> addFilm(@Valid @RequestBody Film film) {
+        return filmService.add(film);
+    }
+
+    @PutMapping("/films")
+    public Mono<Film> updateFilm(@Valid @RequestBody Film film) {
+        return filmService.update(film);
+    }
+
+    @GetMapping("/films/{id}")
+    public Mono<Film> getFilm(@PathVariable Long id, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.FILMS))) {
+            return Mono.empty();
+        }
+        return filmService.getById(id);
+    }
+
+    @PutMapping("/films/{id}/like/{userId}")
+    public Mono<Void> addLike(@PathVariable Long id, @PathVariable Long userId) {
+        return filmService.add(id, userId);
+    }
+
+    @DeleteMapping("/films/{id}/like/{userId}")
+    public Mono<Void> deleteLike(@PathVariable Long id, @PathVariable Long userId) {
+        return filmService.remove(id, userId);
+    }
+
+    @GetMapping("/films/popular")
+    public Mono<List<Film>> getPopular(@RequestParam(defaultValue = "10") int count, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.FILMS, Entity.LIKES))) {
+            return Mono.empty();
+        }
+        return filmService.getPopularFilms(count);
+    }
+}
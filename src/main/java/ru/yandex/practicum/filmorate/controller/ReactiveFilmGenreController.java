@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
+import ru.yandex.practicum.filmorate.service.ReactiveFilmGenreService;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+public class ReactiveFilmGenreController {
+
+    private final ReactiveFilmGenreService service;
+    private final EntityVersions versions;
+
+    public ReactiveFilmGenreController(ReactiveFilmGenreService service, EntityVersions versions) {
+        this.service = service;
+        this.versions = versions;
+    }
+
+    @GetMapping("/genres/{id}")
+    public Mono<FilmGenre> getGenreById(@PathVariable Integer id, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.GENRES))) {
+            return Mono.empty();
+        }
+        return service.getGenreById(id);
+    }
+
+    @GetMapping("/genres")
+    public Mono<List<FilmGenre>> getGenres(ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.GENRES))) {
+            return Mono.empty();
+        }
+        return service.getGenres();
+    }
+}
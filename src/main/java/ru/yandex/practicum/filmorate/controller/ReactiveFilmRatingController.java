@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
+import ru.yandex.practicum.filmorate.service.ReactiveFilmRatingService;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+public class ReactiveFilmRatingController {
+
+    private final ReactiveFilmRatingService service;
+    private final EntityVersions versions;
+
+    public ReactiveFilmRatingController(ReactiveFilmRatingService service, EntityVersions versions) {
+        this.service = service;
+        this.versions = versions;
+    }
+
+    @GetMapping("/mpa/{id}")
+    public Mono<FilmRating> getRatingById(@PathVariable Integer id, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.RATINGS))) {
+            return Mono.empty();
+        }
+        return service.getRatingById(id);
+    }
+
+    @GetMapping("/mpa")
+    public Mono<List<FilmRating>> getRatings(ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.RATINGS))) {
+            return Mono.empty();
+        }
+        return service.getRatings();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+    // Tomcat тоже есть в classpath, и без явной фабрики Spring Boot запустил бы реактивный стек на нем
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
+import ru.yandex.practicum.filmorate.service.ReactiveUserService;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+public class ReactiveUserController {
+
+    private final ReactiveUserService userService;
+    private final EntityVersions versions;
+
+    public ReactiveUserController(ReactiveUserService userService, EntityVersions versions) {
+        this.userService = userService;
+        this.versions = versions;
+    }
+
+    @GetMapping("/users")
+    public Mono<ResponseEntity<List<User>>> getUsers(@RequestParam(required = false) Long after,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.USERS))) {
+            return Mono.empty();
+        }
+        if (after == null && limit == null) {
+            return userService.get().map(ResponseEntity::ok);
+        }
+        int pageSize = limit == null ? PageResponses.DEFAULT_PAGE_SIZE : limit;
+        return userService.get(after == null ? 0L : after, pageSize)
+                .map(users -> PageResponses.of(users, pageSize, User::getId));
+    }
+
+    @PostMapping("/users")
+    public Mono<User> addUser(@Valid @RequestBody User user) {
+        return userService.add(user);
+    }
+
+    @PutMapping("/users")
+    public Mono<User> updateUser(@Valid @RequestBody User user) {
+        return userService.update(user);
+    }
+
+    @GetMapping("/users/{id}")
+    public Mono<User> getUser(@PathVariable Long id, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.USERS))) {
+            return Mono.empty();
+        }
+        return userService.getById(id);
+    }
+
+    @PutMapping("/users/{id}/friends/{friendId}")
+    public Mono<Void> addFriend(@PathVariable Long id, @PathVariable Long friendId) {
+        return userService.add(id, friendId);
+    }
+
+    @DeleteMapping("/users/{id}/friends/{friendId}")
+    public Mono<Void> deleteFriend(@PathVariable Long id, @PathVariable Long friendId) {
+        return userService.remove(id, friendId);
+    }
+
+    @GetMapping("/users/{id}/friends")
+    public Mono<List<User>> getFriends(@PathVariable Long id, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.USERS, Entity.FRIENDS))) {
+            return Mono.empty();
+        }
+        return userService.getFriends(id);
+    }
+
+    @GetMapping("/users/{id}/friends/common/{otherId}")
+    public Mono<List<User>> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId,
+                                             ServerWebExchange exchange) {
+        if (exchange.checkNotModified(versions.etag(Entity.USERS, Entity.FRIENDS))) {
+            return Mono.empty();
+        }
+        return userService.getCommonFriends(id, otherId);
+    }
+}
@@ -1,26 +1,74 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.ImportResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 public class UserController {
 
     private final UserService userService;
+    private final FilmService filmService;
+    private final JsonStreams jsonStreams;
+    private final EntityVersions versions;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FilmService filmService, JsonStreams jsonStreams,
+                          EntityVersions versions) {
         this.userService = userService;
+        this.filmService = filmService;
+        this.jsonStreams = jsonStreams;
+        this.versions = versions;
     }
 
     @GetMapping("/users")
-    public List<User> getUsers() {
-        return userService.get();
+    public ResponseEntity<List<User>> getUsers(@RequestParam(required = false) Long after,
+                                               @RequestParam(required = false) Integer limit,
+                                               WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.USERS))) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(userService.get());
+        }
+        int pageSize = limit == null ? PageResponses.DEFAULT_PAGE_SIZE : limit;
+        return PageResponses.of(userService.get(after == null ? 0L : after, pageSize), pageSize, User::getId);
+    }
+
+    @GetMapping(value = "/users", params = "ids")
+    public ResponseEntity<List<User>> getUsersByIds(@RequestParam List<Long> ids, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.USERS))) {
+            return null;
+        }
+        return PageResponses.byIds(userService.getByIds(ids), ids, User::getId);
+    }
+
+    @GetMapping(value = "/users", params = "stream=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return jsonStreams.ndjson(userService::stream);
+    }
+
+    @GetMapping(value = "/users", params = "stream=json")
+    public ResponseEntity<StreamingResponseBody> streamUsersArray() {
+        return jsonStreams.array(userService::stream);
     }
 
     @PostMapping("/users")
@@ -28,13 +76,36 @@ public class UserController {
         return userService.add(user);
     }
 
+    @PostMapping(value = "/users/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ImportResult> importUsers(@RequestBody List<User> users) {
+        return userService.addAll(users);
+    }
+
+    @PostMapping(value = "/users/import", consumes = JsonStreams.NDJSON)
+    public List<ImportResult> importUsersNdjson(InputStream body) throws IOException {
+        return userService.addAll(jsonStreams.read(body, User.class));
+    }
+
+    @PostMapping(value = "/users/friends/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ImportResult> importFriends(@RequestBody List<Friendship> friendships) {
+        return userService.addFriends(friendships);
+    }
+
+    @PostMapping(value = "/users/friends/import", consumes = JsonStreams.NDJSON)
+    public List<ImportResult> importFriendsNdjson(InputStream body) throws IOException {
+        return userService.addFriends(jsonStreams.read(body, Friendship.class));
+    }
+
     @PutMapping("/users")
     public User updateUser(@Valid @RequestBody User user) {
         return userService.update(user);
     }
 
     @GetMapping("/users/{id}")
-    public User getUser(@PathVariable Long id) {
+    public User getUser(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.USERS))) {
+            return null;
+        }
         return userService.getById(id);
     }
 
@@ -49,12 +120,36 @@ public class UserController {
     }
 
     @GetMapping("/users/{id}/friends")
-    public List<User> getFriends(@PathVariable Long id) {
+    public List<User> getFriends(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.USERS, Entity.FRIENDS))) {
+            return null;
+        }
         return userService.getFriends(id);
     }
 
     @GetMapping("/users/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
+    public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId, WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.USERS, Entity.FRIENDS))) {
+            return null;
+        }
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/users/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Long id, @RequestParam(defaultValue = "10") int count,
+                                           WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.USERS, Entity.FRIENDS))) {
+            return null;
+        }
+        return userService.getFriendSuggestions(id, count);
+    }
+
+    @GetMapping("/users/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id, @RequestParam(defaultValue = "10") int count,
+                                         WebRequest request) {
+        if (request.checkNotModified(versions.etag(Entity.FILMS, Entity.LIKES))) {
+            return null;
+        }
+        return filmService.getRecommendations(id, count);
+    }
 }
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class FilmLike {
+
+    private Long filmId;
+    private Long userId;
+
+    public FilmLike(Long filmId, Long userId) {
+        this.filmId = filmId;
+        this.userId = userId;
+    }
+}
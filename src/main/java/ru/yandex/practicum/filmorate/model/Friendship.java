@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class Friendship {
+
+    private Long userId;
+    private Long friendId;
+
+    public Friendship(Long userId, Long friendId) {
+        this.userId = userId;
+        this.friendId = friendId;
+    }
+}
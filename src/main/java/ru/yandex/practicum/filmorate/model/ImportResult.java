@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportResult {
+
+    private final int index;
+    private Status status;
+    private Long id;
+    private String error;
+
+    public ImportResult(int index) {
+        this.index = index;
+    }
+
+    public void created() {
+        this.status = Status.CREATED;
+    }
+
+    public void created(Long id) {
+        this.status = Status.CREATED;
+        this.id = id;
+    }
+
+    public void exists() {
+        this.status = Status.EXISTS;
+    }
+
+    public void invalid(String error) {
+        this.status = Status.INVALID;
+        this.error = error;
+    }
+
+    public enum Status {
+        CREATED, EXISTS, INVALID
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class EntityVersions {
+
+    public enum Entity {
+        FILMS, LIKES, USERS, FRIENDS, GENRES, RATINGS
+    }
+
+    // Счетчики живут в памяти, поэтому в тег входит метка запуска: после рестарта старые теги не совпадут
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Entity, AtomicLong> versions = new EnumMap<>(Entity.class);
+
+    public EntityVersions() {
+        for (Entity entity : Entity.values()) {
+            versions.put(entity, new AtomicLong());
+        }
+    }
+
+    // Версия увеличивается после записи, а тег читается до чтения данных:
+    // гонка дает лишний полный ответ, но не устаревшие данные под новым тегом
+    public void bump(Entity entity) {
+        versions.get(entity).incrementAndGet();
+    }
+
+    public String etag(Entity... entities) {
+        StringBuilder etag = new StringBuilder("\"").append(epoch);
+        for (Entity entity : entities) {
+            etag.append('-').append(versions.get(entity).get());
+        }
+        return etag.append('"').toString();
+    }
+}
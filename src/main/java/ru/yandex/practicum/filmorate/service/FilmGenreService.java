@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.model.FilmGenre;
 import ru.yandex.practicum.filmorate.storage.film.FilmGenreDao;
@@ -11,6 +13,7 @@ import java.util.List;
 
 @Slf4j
 @Service
+@Profile("!reactive")
 public class FilmGenreService {
 
     private final FilmGenreDao filmGenre;
@@ -19,6 +22,7 @@ public class FilmGenreService {
         this.filmGenre = filmGenre;
     }
 
+    @Transactional(readOnly = true)
     public FilmGenre getGenreById(Integer id) {
         try {
             FilmGenre genre = filmGenre.getGenreById(id);
@@ -29,6 +33,7 @@ public class FilmGenreService {
         }
     }
 
+    @Transactional(readOnly = true)
     public List<FilmGenre> getGenres() {
         List<FilmGenre> genres = filmGenre.getGenres();
         log.info("Получен список жанров {}", genres);
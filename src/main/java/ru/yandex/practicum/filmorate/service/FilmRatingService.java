@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.model.FilmRating;
 import ru.yandex.practicum.filmorate.storage.film.FilmRatingDao;
@@ -11,6 +13,7 @@ import java.util.List;
 
 @Slf4j
 @Service
+@Profile("!reactive")
 public class FilmRatingService {
 
     private final FilmRatingDao filmRating;
@@ -19,6 +22,7 @@ public class FilmRatingService {
         this.filmRating = filmRating;
     }
 
+    @Transactional(readOnly = true)
     public FilmRating getRatingById(Integer id) {
         try {
             FilmRating rating = filmRating.getRatingById(id);
@@ -29,6 +33,7 @@ public class FilmRatingService {
         }
     }
 
+    @Transactional(readOnly = true)
     public List<FilmRating> getRatings() {
         List<FilmRating> ratings = filmRating.getRatings();
         log.info("Получен список рейтингов {}", ratings);
@@ -4,33 +4,72 @@ import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmTrending;
+import ru.yandex.practicum.filmorate.storage.film.impl.LikeMatrix;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Profile("!reactive")
 public class FilmService {
 
     @Qualifier("filmDbStorage")
     private final FilmStorage filmStorage;
     private final UserService userService;
     private final FilmGenreService genreService;
+    private final FilmRatingService ratingService;
+    private final Validator validator;
+    private final EntityVersions versions;
+    private final LikeMatrix likeMatrix;
+    private final FilmSearchIndex searchIndex;
+    private final FilmTrending trending;
+    private final int batchSize;
 
     @Autowired
-    public FilmService(FilmStorage filmStorage, UserService userService, FilmGenreService filmGenreService) {
+    public FilmService(FilmStorage filmStorage, UserService userService, FilmGenreService filmGenreService,
+                       FilmRatingService filmRatingService, Validator validator, EntityVersions versions,
+                       LikeMatrix likeMatrix, FilmSearchIndex searchIndex, FilmTrending trending,
+                       @Value("${filmorate.import.batch-size:1000}") int batchSize) {
         this.filmStorage = filmStorage;
+        this.likeMatrix = likeMatrix;
+        this.searchIndex = searchIndex;
+        this.trending = trending;
         this.userService = userService;
         this.genreService = filmGenreService;
+        this.ratingService = filmRatingService;
+        this.validator = validator;
+        this.versions = versions;
+        this.batchSize = batchSize;
     }
 
     public Film add(Film film) {
@@ -38,32 +77,74 @@ public class FilmService {
         checkGenres(film.getGenres());
         film = filmStorage.add(film);
         filmStorage.addFilmGenre(film);
+        searchIndex.index(film);
+        versions.bump(Entity.FILMS);
         log.info("Добавлен фильм {}", film);
         return film;
     }
 
+    public List<ImportResult> addAll(List<Film> films) {
+        Map<Integer, FilmGenre> genres = new HashMap<>();
+        genreService.getGenres().forEach(genre -> genres.put(genre.getId(), genre));
+        Set<Integer> ratings = ratingService.getRatings().stream()
+                .map(FilmRating::getId)
+                .collect(Collectors.toSet());
+
+        AtomicLong created = new AtomicLong();
+        List<ImportResult> results = Imports.run(films, batchSize, film -> check(film, genres, ratings),
+                (batch, batchResults) -> {
+                    List<Film> added = filmStorage.addAll(batch);
+                    added.forEach(searchIndex::index);
+                    versions.bump(Entity.FILMS);
+                    for (int i = 0; i < added.size(); i++) {
+                        batchResults.get(i).created(added.get(i).getId());
+                    }
+                    created.addAndGet(added.size());
+                });
+        log.info("Импортировано фильмов: {} из {}", created.get(), films.size());
+        return results;
+    }
+
     public Film update(Film film) {
         checkReleaseDate(film.getReleaseDate());
         checkGenres(film.getGenres());
-        if (getById(film.getId()) != null) {
-            filmStorage.update(film);
-            filmStorage.addFilmGenre(film);
-            log.info("Обновлен фильм {}", film);
-            return film;
-        } else {
-            throw new ObjectNotFoundException("Попытка обновить фильм {}, которого нет в списке " + film);
-        }
+        checkExists(film.getId());
+        filmStorage.update(film);
+        filmStorage.addFilmGenre(film);
+        searchIndex.index(film);
+        versions.bump(Entity.FILMS);
+        log.info("Обновлен фильм {}", film);
+        return film;
     }
 
+    @Transactional(readOnly = true)
     public List<Film> get() {
         List<Film> films = filmStorage.get();
-        for (Film film : films) {
-            filmStorage.setFilmGenre(film);
-        }
-        log.info("Получен список фильмов {}", films);
+        filmStorage.setFilmGenre(films);
+        log.info("Получен список фильмов: {} шт.", films.size());
         return films;
     }
 
+    @Transactional(readOnly = true)
+    public void stream(Consumer<Film> action) {
+        AtomicLong count = new AtomicLong();
+        filmStorage.stream(film -> {
+            action.accept(film);
+            count.incrementAndGet();
+        });
+        log.info("Выгружен список фильмов: {} шт.", count.get());
+    }
+
+    @Transactional(readOnly = true)
+    public List<Film> get(Long after, int limit) {
+        Paging.checkPageSize(limit);
+        List<Film> films = filmStorage.get(after, limit);
+        filmStorage.setFilmGenre(films);
+        log.info("Получена страница фильмов после id {}: {} шт.", after, films.size());
+        return films;
+    }
+
+    @Transactional(readOnly = true)
     public Film getById(Long id) {
         try {
             Film film = filmStorage.getFilmById(id);
@@ -75,30 +156,178 @@ public class FilmService {
         }
     }
 
+    // Фильмы в порядке запроса; не найденные id пропускаются
+    @Transactional(readOnly = true)
+    public List<Film> getByIds(List<Long> ids) {
+        Paging.checkIdCount(ids);
+        List<Film> films = filmStorage.getByIds(ids);
+        filmStorage.setFilmGenre(films);
+        log.info("Получены фильмы по списку id: {} шт. из {}", films.size(), ids.size());
+        return films;
+    }
+
     public void add(Long filmId, Long userId) {
-        if (getById(filmId) != null && userService.getById(userId) != null) {
+        try {
             filmStorage.addLike(filmId, userId);
-            log.info("Пользователь {} поставил лайк фильму {}", userService.getById(userId), getById(filmId));
+        } catch (DataIntegrityViolationException e) {
+            checkExists(filmId);
+            userService.checkExists(userId);
+            throw e;
+        }
+        versions.bump(Entity.LIKES);
+        log.info("Пользователь с id {} поставил лайк фильму с id {}", userId, filmId);
+    }
+
+    public List<ImportResult> addLikes(List<FilmLike> likes) {
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (FilmLike like : likes) {
+            if (like != null) {
+                filmIds.add(like.getFilmId());
+                userIds.add(like.getUserId());
+            }
         }
+        Set<Long> films = findExisting(filmIds);
+        Set<Long> users = userService.findExisting(userIds);
+
+        AtomicLong created = new AtomicLong();
+        List<ImportResult> results = Imports.run(likes, batchSize, like -> {
+            if (!films.contains(like.getFilmId())) {
+                return "Фильм с id " + like.getFilmId() + " не найден";
+            }
+            if (!users.contains(like.getUserId())) {
+                return "Пользоветель с id " + like.getUserId() + " не найден";
+            }
+            return null;
+        }, (batch, batchResults) -> {
+            int[] inserted = filmStorage.addLikes(batch);
+            versions.bump(Entity.LIKES);
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    batchResults.get(i).created();
+                    created.incrementAndGet();
+                } else {
+                    batchResults.get(i).exists();
+                }
+            }
+        });
+        log.info("Импортировано лайков: {} из {}", created.get(), likes.size());
+        return results;
     }
 
     public void remove(Long filmId, Long userId) {
-        if (getById(filmId) != null && userService.getById(userId) != null) {
-            filmStorage.removeLike(filmId, userId);
-            log.info("Пользователь {} удалил лайк к фильму {}", userService.getById(userId), getById(filmId));
+        if (!filmStorage.removeLike(filmId, userId)) {
+            checkExists(filmId);
+            userService.checkExists(userId);
         }
+        versions.bump(Entity.LIKES);
+        log.info("Пользователь с id {} удалил лайк к фильму с id {}", userId, filmId);
     }
 
+    @Transactional(readOnly = true)
     public List<Film> getPopularFilms(int count) {
+        Paging.checkPageSize(count);
         List<Film> films = filmStorage.getPopular(count);
-        for (Film film : films) {
-            filmStorage.setFilmGenre(film);
+        filmStorage.setFilmGenre(films);
+        log.info("Получен список популярных фильмов: {} шт.", films.size());
+        return films;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpa, Integer year) {
+        Paging.checkPageSize(count);
+        List<Film> films = filmStorage.getPopular(count, genreId, mpa, year);
+        filmStorage.setFilmGenre(films);
+        log.info("Получен список популярных фильмов с жанром {}, рейтингом {}, годом {}: {} шт.", genreId, mpa, year,
+                films.size());
+        return films;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Film> getTrendingFilms(String window, int count) {
+        Paging.checkPageSize(count);
+        FilmTrending.Window trendingWindow = Arrays.stream(FilmTrending.Window.values())
+                .filter(value -> value.getLabel().equals(window))
+                .findFirst()
+                .orElseThrow(() -> new ValidationException("Окно трендов должно быть одним из 1h, 24h, 7d. Передано: "
+                        + window));
+        List<Film> films = filmStorage.getByIds(trending.getTrending(trendingWindow, count));
+        filmStorage.setFilmGenre(films);
+        log.info("Получен список фильмов в трендах за {}: {} шт.", window, films.size());
+        return films;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Film> search(String query, int limit) {
+        Paging.checkPageSize(limit);
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
         }
-        log.info("Получен список популярных фильмов {}", films);
+        List<Film> films = filmStorage.getByIds(searchIndex.search(query, limit));
+        filmStorage.setFilmGenre(films);
+        log.info("По запросу '{}' найдено фильмов: {} шт.", query, films.size());
         return films;
     }
 
-    private void checkReleaseDate(@NotNull LocalDate date) {
+    @Transactional(readOnly = true)
+    public List<Film> getRecommendations(Long userId, int count) {
+        Paging.checkPageSize(count);
+        userService.checkExists(userId);
+        List<Film> films = filmStorage.getByIds(likeMatrix.recommend(userId, count));
+        filmStorage.setFilmGenre(films);
+        log.info("Получены рекомендации для пользователя с id {}: {} шт.", userId, films.size());
+        return films;
+    }
+
+    private void checkExists(Long id) {
+        if (!filmStorage.contains(id)) {
+            throw new ObjectNotFoundException("Фильм с id " + id + " не найден");
+        }
+    }
+
+    private Set<Long> findExisting(Set<Long> ids) {
+        ids.remove(null);
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> batch : Imports.partition(new ArrayList<>(ids), batchSize)) {
+            existing.addAll(filmStorage.findExisting(batch));
+        }
+        return existing;
+    }
+
+    private String check(Film film, Map<Integer, FilmGenre> genres, Set<Integer> ratings) {
+        Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (film.getReleaseDate() == null) {
+            return "дата релиза не может быть пустой";
+        }
+        try {
+            checkReleaseDate(film.getReleaseDate());
+        } catch (ValidationException e) {
+            return e.getMessage();
+        }
+        if (!ratings.contains(film.getMpa().getId())) {
+            return "Рейтинг с id " + film.getMpa().getId() + " не найден";
+        }
+        Map<Integer, FilmGenre> checked = new TreeMap<>();
+        if (film.getGenres() != null) {
+            for (FilmGenre genre : film.getGenres()) {
+                FilmGenre known = genres.get(genre.getId());
+                if (known == null) {
+                    return "Жанр с id " + genre.getId() + " не найден";
+                }
+                checked.put(known.getId(), known);
+            }
+        }
+        film.setGenres(new ArrayList<>(checked.values()));
+        return null;
+    }
+
+    static void checkReleaseDate(@NotNull LocalDate date) {
         if (date.isBefore(LocalDate.of(1895, 12, 28))) {
             throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года. Переданная дата: "
                     + date);
@@ -106,15 +335,11 @@ public class FilmService {
     }
 
     private void checkGenres(@NotNull List<FilmGenre> genres) {
-        Set<Integer> ids = new HashSet<>();
+        Map<Integer, FilmGenre> checked = new TreeMap<>();
         for (FilmGenre genre : genres) {
-            if (genreService.getGenreById(genre.getId()) != null) {
-                ids.add(genre.getId());
-            }
+            checked.computeIfAbsent(genre.getId(), genreService::getGenreById);
         }
         genres.clear();
-        for (Integer i : ids) {
-            genres.add(genreService.getGenreById(i));
-        }
+        genres.addAll(checked.values());
     }
 }
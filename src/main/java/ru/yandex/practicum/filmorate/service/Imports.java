@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.ImportResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+final class Imports {
+
+    private Imports() {
+    }
+
+    // Сначала проверяются все записи, и только потом валидные пишутся в хранилище пачками по batchSize
+    static <T> List<ImportResult> run(List<T> items, int batchSize, Function<T, String> check,
+                                      BiConsumer<List<T>, List<ImportResult>> writer) {
+        List<ImportResult> results = new ArrayList<>(items.size());
+        List<T> valid = new ArrayList<>(items.size());
+        List<ImportResult> pending = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            ImportResult result = new ImportResult(i);
+            results.add(result);
+            String error = item == null ? "пустая запись" : check.apply(item);
+            if (error != null) {
+                result.invalid(error);
+            } else {
+                valid.add(item);
+                pending.add(result);
+            }
+        }
+        for (int from = 0; from < valid.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, valid.size());
+            writer.accept(valid.subList(from, to), pending.subList(from, to));
+        }
+        return results;
+    }
+
+    static <T> List<List<T>> partition(List<T> items, int batchSize) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += batchSize) {
+            batches.add(items.subList(from, Math.min(from + batchSize, items.size())));
+        }
+        return batches;
+    }
+}
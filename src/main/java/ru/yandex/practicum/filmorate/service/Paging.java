@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.List;
+
+final class Paging {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private Paging() {
+    }
+
+    static void checkPageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + ". Передано: "
+                    + limit);
+        }
+    }
+
+    static void checkIdCount(List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_PAGE_SIZE) {
+            throw new ValidationException("Число id должно быть от 1 до " + MAX_PAGE_SIZE + ". Передано: "
+                    + ids.size());
+        }
+        if (ids.contains(null)) {
+            throw new ValidationException("Список id не может содержать пустых значений");
+        }
+    }
+}
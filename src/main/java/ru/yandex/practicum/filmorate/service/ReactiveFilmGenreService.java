@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.storage.film.ReactiveFilmGenreDao;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveFilmGenreService {
+
+    private final ReactiveFilmGenreDao filmGenre;
+
+    public ReactiveFilmGenreService(ReactiveFilmGenreDao filmGenre) {
+        this.filmGenre = filmGenre;
+    }
+
+    public Mono<FilmGenre> getGenreById(Integer id) {
+        return filmGenre.getGenreById(id)
+                .switchIfEmpty(Mono.error(() -> new ObjectNotFoundException("Жанр с id " + id + " не найден")))
+                .doOnNext(genre -> log.info("Получен жанр {}", genre));
+    }
+
+    public Mono<List<FilmGenre>> getGenres() {
+        return filmGenre.getGenres()
+                .collectList()
+                .doOnNext(genres -> log.info("Получен список жанров {}", genres));
+    }
+}
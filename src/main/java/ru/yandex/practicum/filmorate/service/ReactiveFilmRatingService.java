@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.storage.film.ReactiveFilmRatingDao;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveFilmRatingService {
+
+    private final ReactiveFilmRatingDao filmRating;
+
+    public ReactiveFilmRatingService(ReactiveFilmRatingDao filmRating) {
+        this.filmRating = filmRating;
+    }
+
+    public Mono<FilmRating> getRatingById(Integer id) {
+        return filmRating.getRatingById(id)
+                .switchIfEmpty(Mono.error(() -> new ObjectNotFoundException("Рейтинг с id " + id + " не найден")))
+                .doOnNext(rating -> log.info("Получен рейтинг {}", rating));
+    }
+
+    public Mono<List<FilmRating>> getRatings() {
+        return filmRating.getRatings()
+                .collectList()
+                .doOnNext(ratings -> log.info("Получен список рейтингов {}", ratings));
+    }
+}
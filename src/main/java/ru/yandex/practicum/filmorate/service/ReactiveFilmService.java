@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
+import ru.yandex.practicum.filmorate.storage.film.ReactiveFilmStorage;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveFilmService {
+
+    private final ReactiveFilmStorage filmStorage;
+    private final ReactiveUserService userService;
+    private final ReactiveFilmGenreService genreService;
+    private final EntityVersions versions;
+
+    public ReactiveFilmService(ReactiveFilmStorage filmStorage, ReactiveUserService userService,
+                               ReactiveFilmGenreService genreService, EntityVersions versions) {
+        this.filmStorage = filmStorage;
+        this.userService = userService;
+        this.genreService = genreService;
+        this.versions = versions;
+    }
+
+    public Mono<Film> add(Film film) {
+        return Mono.fromRunnable(() -> FilmService.checkReleaseDate(film.getReleaseDate()))
+                .then(checkGenres(film))
+                .then(Mono.defer(() -> filmStorage.add(film)))
+                .doOnNext(added -> {
+                    versions.bump(Entity.FILMS);
+                    log.info("Добавлен фильм {}", added);
+                });
+    }
+
+    public Mono<Film> update(Film film) {
+        return Mono.fromRunnable(() -> FilmService.checkReleaseDate(film.getReleaseDate()))
+                .then(checkGenres(film))
+                .then(checkExists(film.getId()))
+                .then(Mono.defer(() -> filmStorage.update(film)))
+                .doOnNext(updated -> {
+                    versions.bump(Entity.FILMS);
+                    log.info("Обновлен фильм {}", updated);
+                });
+    }
+
+    public Mono<List<Film>> get() {
+        return filmStorage.get()
+                .collectList()
+                .doOnNext(films -> log.info("Получен список фильмов: {} шт.", films.size()));
+    }
+
+    public Mono<List<Film>> get(Long after, int limit) {
+        return Mono.fromRunnable(() -> Paging.checkPageSize(limit))
+                .thenMany(filmStorage.get(after, limit))
+                .collectList()
+                .doOnNext(films -> log.info("Получена страница фильмов после id {}: {} шт.", after, films.size()));
+    }
+
+    public Mono<Film> getById(Long id) {
+        return filmStorage.getFilmById(id)
+                .switchIfEmpty(Mono.error(() -> new ObjectNotFoundException("Фильм с id " + id + " не найден")))
+                .doOnNext(film -> log.info("Получен фильм {}", film));
+    }
+
+    public Mono<Void> add(Long filmId, Long userId) {
+        return filmStorage.addLike(filmId, userId)
+                .onErrorResume(DataIntegrityViolationException.class, e -> checkExists(filmId)
+                        .then(userService.checkExists(userId))
+                        .then(Mono.error(e)))
+                .doOnSuccess(ignored -> {
+                    versions.bump(Entity.LIKES);
+                    log.info("Пользователь с id {} поставил лайк фильму с id {}", userId, filmId);
+                });
+    }
+
+    public Mono<Void> remove(Long filmId, Long userId) {
+        return filmStorage.removeLike(filmId, userId)
+                .flatMap(removed -> removed ? Mono.<Void>empty() : checkExists(filmId)
+                        .then(userService.checkExists(userId)))
+                .doOnSuccess(ignored -> {
+                    versions.bump(Entity.LIKES);
+                    log.info("Пользователь с id {} удалил лайк к фильму с id {}", userId, filmId);
+                });
+    }
+
+    public Mono<List<Film>> getPopularFilms(int count) {
+        return filmStorage.getPopular(count)
+                .collectList()
+                .doOnNext(films -> log.info("Получен список популярных фильмов {}", films));
+    }
+
+    private Mono<Void> checkExists(Long id) {
+        return filmStorage.contains(id)
+                .flatMap(exists -> exists ? Mono.empty() : Mono.error(new ObjectNotFoundException(
+                        "Фильм с id " + id + " не найден")));
+    }
+
+    private Mono<Void> checkGenres(@NotNull Film film) {
+        return Flux.fromIterable(film.getGenres())
+                .map(FilmGenre::getId)
+                .distinct()
+                .sort()
+                .concatMap(genreService::getGenreById)
+                .collectList()
+                .doOnNext(genres -> {
+                    film.getGenres().clear();
+                    film.getGenres().addAll(genres);
+                })
+                .then();
+    }
+}
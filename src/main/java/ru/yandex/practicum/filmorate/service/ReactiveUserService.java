@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
+import ru.yandex.practicum.filmorate.storage.user.ReactiveUserStorage;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveUserService {
+
+    private final ReactiveUserStorage userStorage;
+    private final EntityVersions versions;
+
+    public ReactiveUserService(ReactiveUserStorage userStorage, EntityVersions versions) {
+        this.userStorage = userStorage;
+        this.versions = versions;
+    }
+
+    public Mono<User> add(User user) {
+        return Mono.fromRunnable(() -> {
+                    UserService.checkName(user);
+                    UserService.checkLogin(user.getLogin());
+                })
+                .then(Mono.defer(() -> userStorage.add(user)))
+                .doOnNext(added -> {
+                    versions.bump(Entity.USERS);
+                    log.info("Добавлен пользователь {}", added);
+                });
+    }
+
+    public Mono<User> update(User user) {
+        return Mono.fromRunnable(() -> {
+                    UserService.checkName(user);
+                    UserService.checkLogin(user.getLogin());
+                })
+                .then(checkExists(user.getId()))
+                .then(Mono.defer(() -> userStorage.update(user)))
+                .doOnNext(updated -> {
+                    versions.bump(Entity.USERS);
+                    log.info("Обновлен пользователь {}", updated);
+                });
+    }
+
+    public Mono<List<User>> get() {
+        return userStorage.get()
+                .collectList()
+                .doOnNext(users -> log.info("Получен список пользователей: {} шт.", users.size()));
+    }
+
+    public Mono<List<User>> get(Long after, int limit) {
+        return Mono.fromRunnable(() -> Paging.checkPageSize(limit))
+                .thenMany(userStorage.get(after, limit))
+                .collectList()
+                .doOnNext(users -> log.info("Получена страница пользователей после id {}: {} шт.", after,
+                        users.size()));
+    }
+
+    public Mono<User> getById(Long id) {
+        return userStorage.getUserById(id)
+                .switchIfEmpty(Mono.error(() -> new ObjectNotFoundException("Пользоветель с id " + id +
+                        " не найден")))
+                .doOnNext(user -> log.info("Получен пользователь {}", user));
+    }
+
+    public Mono<Void> add(Long userId, Long friendId) {
+        return userStorage.addFriend(userId, friendId)
+                .onErrorResume(DataIntegrityViolationException.class, e -> checkExists(userId)
+                        .then(checkExists(friendId))
+                        .then(Mono.error(e)))
+                .doOnSuccess(ignored -> {
+                    versions.bump(Entity.FRIENDS);
+                    log.info("Пользователь с id {} добавил в друзья пользователя с id {}", userId, friendId);
+                });
+    }
+
+    public Mono<Void> remove(Long userId, Long friendId) {
+        return userStorage.removeFriend(userId, friendId)
+                .flatMap(removed -> removed ? Mono.<Void>empty() : checkExists(userId).then(checkExists(friendId)))
+                .doOnSuccess(ignored -> {
+                    versions.bump(Entity.FRIENDS);
+                    log.info("Пользователь с id {} удалил из друзей пользователя с id {}", userId, friendId);
+                });
+    }
+
+    public Mono<List<User>> getFriends(Long userId) {
+        return checkExists(userId)
+                .thenMany(userStorage.getFriends(userId))
+                .collectList()
+                .doOnNext(friends -> log.info("Получен список друзей {} пользователя с id {}", friends, userId));
+    }
+
+    public Mono<List<User>> getCommonFriends(Long firstUserId, Long secondUserId) {
+        return checkExists(firstUserId)
+                .then(checkExists(secondUserId))
+                .thenMany(userStorage.getCommonFriends(firstUserId, secondUserId))
+                .collectList()
+                .doOnNext(friends -> log.info("Получен список общих друзей пользователей с id {} и {} {}",
+                        firstUserId, secondUserId, friends));
+    }
+
+    public Mono<Void> checkExists(Long id) {
+        return userStorage.contains(id)
+                .flatMap(exists -> exists ? Mono.empty() : Mono.error(new ObjectNotFoundException(
+                        "Пользоветель с id " + id + " не найден")));
+    }
+}
@@ -4,52 +4,113 @@ import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.ImportResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions.Entity;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.user.impl.FriendSuggestions;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Profile("!reactive")
 public class UserService {
 
     @Qualifier("userDbStorage")
     private final UserStorage userStorage;
+    private final Validator validator;
+    private final EntityVersions versions;
+    private final FriendSuggestions friendSuggestions;
+    private final int batchSize;
 
     @Autowired
-    public UserService(UserStorage userStorage) {
+    public UserService(UserStorage userStorage, Validator validator, EntityVersions versions,
+                       FriendSuggestions friendSuggestions,
+                       @Value("${filmorate.import.batch-size:1000}") int batchSize) {
         this.userStorage = userStorage;
+        this.validator = validator;
+        this.versions = versions;
+        this.friendSuggestions = friendSuggestions;
+        this.batchSize = batchSize;
     }
 
     public User add(User user) {
         checkName(user);
         checkLogin(user.getLogin());
         user = userStorage.add(user);
+        versions.bump(Entity.USERS);
         log.info("Добавлен пользователь {}", user);
         return user;
     }
 
+    public List<ImportResult> addAll(List<User> users) {
+        AtomicLong created = new AtomicLong();
+        List<ImportResult> results = Imports.run(users, batchSize, this::check, (batch, batchResults) -> {
+            List<User> added = userStorage.addAll(batch);
+            versions.bump(Entity.USERS);
+            for (int i = 0; i < added.size(); i++) {
+                batchResults.get(i).created(added.get(i).getId());
+            }
+            created.addAndGet(added.size());
+        });
+        log.info("Импортировано пользователей: {} из {}", created.get(), users.size());
+        return results;
+    }
+
     public User update(User user) {
         checkName(user);
         checkLogin(user.getLogin());
-        if (getById(user.getId()) != null) {
-            userStorage.update(user);
-            log.info("Обновлен пользователь {}", user);
-        }
+        checkExists(user.getId());
+        userStorage.update(user);
+        versions.bump(Entity.USERS);
+        log.info("Обновлен пользователь {}", user);
         return user;
     }
 
+    @Transactional(readOnly = true)
     public List<User> get() {
         List<User> users = userStorage.get();
-        log.info("Получен список пользователей {}", users);
+        log.info("Получен список пользователей: {} шт.", users.size());
         return users;
     }
 
+    @Transactional(readOnly = true)
+    public void stream(Consumer<User> action) {
+        AtomicLong count = new AtomicLong();
+        userStorage.stream(user -> {
+            action.accept(user);
+            count.incrementAndGet();
+        });
+        log.info("Выгружен список пользователей: {} шт.", count.get());
+    }
+
+    @Transactional(readOnly = true)
+    public List<User> get(Long after, int limit) {
+        Paging.checkPageSize(limit);
+        List<User> users = userStorage.get(after, limit);
+        log.info("Получена страница пользователей после id {}: {} шт.", after, users.size());
+        return users;
+    }
+
+    @Transactional(readOnly = true)
     public User getById(Long id) {
         try {
             User user = userStorage.getUserById(id);
@@ -60,45 +121,139 @@ public class UserService {
         }
     }
 
+    // Пользователи в порядке запроса; не найденные id пропускаются
+    @Transactional(readOnly = true)
+    public List<User> getByIds(List<Long> ids) {
+        Paging.checkIdCount(ids);
+        List<User> users = userStorage.getByIds(ids);
+        log.info("Получены пользователи по списку id: {} шт. из {}", users.size(), ids.size());
+        return users;
+    }
+
     public void add(Long userId, Long friendId) {
-        if (getById(userId) != null && getById(friendId) != null) {
+        try {
             userStorage.addFriend(userId, friendId);
-            log.info("Пользователь {} добавил в друзья {}", getById(userId), getById(friendId));
+        } catch (DataIntegrityViolationException e) {
+            checkExists(userId);
+            checkExists(friendId);
+            throw e;
         }
+        versions.bump(Entity.FRIENDS);
+        log.info("Пользователь с id {} добавил в друзья пользователя с id {}", userId, friendId);
+    }
+
+    public List<ImportResult> addFriends(List<Friendship> friendships) {
+        Set<Long> ids = new HashSet<>();
+        for (Friendship friendship : friendships) {
+            if (friendship != null) {
+                ids.add(friendship.getUserId());
+                ids.add(friendship.getFriendId());
+            }
+        }
+        Set<Long> users = findExisting(ids);
+
+        AtomicLong created = new AtomicLong();
+        List<ImportResult> results = Imports.run(friendships, batchSize, friendship -> {
+            if (!users.contains(friendship.getUserId())) {
+                return "Пользоветель с id " + friendship.getUserId() + " не найден";
+            }
+            if (!users.contains(friendship.getFriendId())) {
+                return "Пользоветель с id " + friendship.getFriendId() + " не найден";
+            }
+            return null;
+        }, (batch, batchResults) -> {
+            int[] inserted = userStorage.addFriends(batch);
+            versions.bump(Entity.FRIENDS);
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    batchResults.get(i).created();
+                    created.incrementAndGet();
+                } else {
+                    batchResults.get(i).exists();
+                }
+            }
+        });
+        log.info("Импортировано связей дружбы: {} из {}", created.get(), friendships.size());
+        return results;
     }
 
     public void remove(Long userId, Long friendId) {
-        if (getById(userId) != null && getById(friendId) != null) {
-            userStorage.removeFriend(userId, friendId);
-            log.info("Пользователь {} удалил из друзей {}", getById(userId), getById(friendId));
+        if (!userStorage.removeFriend(userId, friendId)) {
+            checkExists(userId);
+            checkExists(friendId);
         }
+        versions.bump(Entity.FRIENDS);
+        log.info("Пользователь с id {} удалил из друзей пользователя с id {}", userId, friendId);
     }
 
+    @Transactional(readOnly = true)
     public List<User> getFriends(Long userId) {
-        List<User> friends = new ArrayList<>();
-        if (getById(userId) != null) {
-            friends = userStorage.getFriends(userId);
-            log.info("Получен список друзей {} пользователя с id {}", friends, userId);
-        }
+        checkExists(userId);
+        List<User> friends = userStorage.getFriends(userId);
+        log.info("Получен список друзей {} пользователя с id {}", friends, userId);
         return friends;
     }
 
+    @Transactional(readOnly = true)
     public List<User> getCommonFriends(Long firstUserId, Long secondUserId) {
-        List<User> friends = new ArrayList<>();
-        if (getById(firstUserId) != null && getById(secondUserId) != null) {
-            friends = userStorage.getCommonFriends(firstUserId, secondUserId);
-            log.info("Получен список общих друзей пользователей с id {} и {} {}", firstUserId, secondUserId, friends);
-        }
+        checkExists(firstUserId);
+        checkExists(secondUserId);
+        List<User> friends = userStorage.getCommonFriends(firstUserId, secondUserId);
+        log.info("Получен список общих друзей пользователей с id {} и {} {}", firstUserId, secondUserId, friends);
         return friends;
     }
 
-    private void checkName(@NotNull User user) {
+    @Transactional(readOnly = true)
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        Paging.checkPageSize(count);
+        checkExists(userId);
+        List<User> users = userStorage.getByIds(friendSuggestions.suggest(userId, count, userStorage::getFriendIds));
+        log.info("Получены рекомендации друзей для пользователя с id {}: {} шт.", userId, users.size());
+        return users;
+    }
+
+    public void checkExists(Long id) {
+        if (!userStorage.contains(id)) {
+            throw new ObjectNotFoundException("Пользоветель с id " + id + " не найден");
+        }
+    }
+
+    public Set<Long> findExisting(Set<Long> ids) {
+        ids.remove(null);
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> batch : Imports.partition(new ArrayList<>(ids), batchSize)) {
+            existing.addAll(userStorage.findExisting(batch));
+        }
+        return existing;
+    }
+
+    private String check(User user) {
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (user.getBirthday() == null) {
+            return "дата рождения не может быть пустой";
+        }
+        try {
+            checkLogin(user.getLogin());
+        } catch (ValidationException e) {
+            return e.getMessage();
+        }
+        checkName(user);
+        return null;
+    }
+
+    static void checkName(@NotNull User user) {
         if (user.getName() == null || user.getName().isBlank() || user.getName().isEmpty()) {
             user.setName(user.getLogin());
         }
     }
 
-    private void checkLogin(@NotNull String login) {
+    static void checkLogin(@NotNull String login) {
         if (login.contains(" ")) {
             throw new ValidationException("Логин не может быть пустым и содержать пробелы. Переданный логин: "
                     + login);
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+public final class IdChunks {
+
+    // Столько id передается в один запрос с = ANY(?): длинный список разбивается на несколько
+    // запросов, чтобы массив параметра и план запроса оставались небольшими
+    public static final int SIZE = 500;
+
+    private IdChunks() {
+    }
+
+    // Повторяющиеся id передаются в базу один раз
+    public static List<Long[]> split(Collection<Long> ids) {
+        Long[] distinct = new LinkedHashSet<>(ids).toArray(new Long[0]);
+        List<Long[]> chunks = new ArrayList<>((distinct.length + SIZE - 1) / SIZE);
+        for (int from = 0; from < distinct.length; from += SIZE) {
+            chunks.add(Arrays.copyOfRange(distinct, from, Math.min(distinct.length, from + SIZE)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public final class JdbcStreams {
+
+    private static final int FETCH_SIZE = 500;
+    private static final String LAZY_ON = "SET LAZY_QUERY_EXECUTION TRUE";
+    private static final String LAZY_OFF = "SET LAZY_QUERY_EXECUTION FALSE";
+
+    private JdbcStreams() {
+    }
+
+    // H2 по умолчанию материализует весь результат до выдачи первой строки,
+    // поэтому на время запроса включается ленивое выполнение
+    public static void forEach(JdbcTemplate template, String sql, ResultSetReader reader) {
+        template.execute((ConnectionCallback<Void>) con -> {
+            execute(con, LAZY_ON);
+            try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    reader.read(rs);
+                }
+            } finally {
+                execute(con, LAZY_OFF);
+            }
+            return null;
+        });
+    }
+
+    private static void execute(Connection con, String sql) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    public interface ResultSetReader {
+        void read(ResultSet rs) throws SQLException;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+public final class SortedArrays {
+
+    public static final long[] EMPTY = new long[0];
+    private static final int GALLOP_RATIO = 16;
+
+    private SortedArrays() {
+    }
+
+    public static boolean contains(long[] array, long value) {
+        return Arrays.binarySearch(array, value) >= 0;
+    }
+
+    // Массивы не изменяются на месте: при вставке и удалении возвращается новая копия,
+    // а если значение уже есть (или его нет) — тот же самый массив
+    public static long[] insert(long[] array, long value) {
+        int index = Arrays.binarySearch(array, value);
+        if (index >= 0) {
+            return array;
+        }
+        index = -index - 1;
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    // Линейное слияние, а если один массив много меньше другого — поиск с галопом по большему
+    public static long[] intersect(long[] first, long[] second) {
+        if (first.length > second.length) {
+            long[] swap = first;
+            first = second;
+            second = swap;
+        }
+        if (first.length == 0) {
+            return EMPTY;
+        }
+        long[] result = new long[first.length];
+        int size = 0;
+        if (first.length * GALLOP_RATIO < second.length) {
+            int from = 0;
+            for (long value : first) {
+                from = gallop(second, from, value);
+                if (from == second.length) {
+                    break;
+                }
+                if (second[from] == value) {
+                    result[size++] = value;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < first.length && j < second.length) {
+                if (first[i] < second[j]) {
+                    i++;
+                } else if (first[i] > second[j]) {
+                    j++;
+                } else {
+                    result[size++] = first[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    public static long[] remove(long[] array, long value) {
+        int index = Arrays.binarySearch(array, value);
+        if (index < 0) {
+            return array;
+        }
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    // Индекс первого элемента не меньше value начиная с from: шаг удваивается, затем бинарный поиск
+    private static int gallop(long[] array, int from, long value) {
+        int bound = 1;
+        while (from + bound < array.length && array[from + bound] < value) {
+            bound <<= 1;
+        }
+        int low = from + (bound >> 1);
+        int high = Math.min(from + bound, array.length - 1);
+        if (low >= array.length || array[high] < value) {
+            return array.length;
+        }
+        int index = Arrays.binarySearch(array, low, high + 1, value);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+@Component
+public class SqlMetrics {
+
+    private static final String TIMER = "filmorate.sql";
+    private static final String ROWS = "filmorate.sql.rows";
+
+    private final MeterRegistry registry;
+
+    public SqlMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Recorder forDao(String dao) {
+        return new Recorder(dao);
+    }
+
+    // Метрики одного хранилища: время и число строк каждого запроса с тегами dao и statement
+    public final class Recorder {
+
+        private final String dao;
+        private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>();
+
+        private Recorder(String dao) {
+            this.dao = dao;
+        }
+
+        public <T> List<T> query(String statement, Supplier<List<T>> query) {
+            return record(statement, query, List::size);
+        }
+
+        public <T> T queryForObject(String statement, Supplier<T> query) {
+            return record(statement, query, result -> result == null ? 0 : 1);
+        }
+
+        public int update(String statement, IntSupplier update) {
+            return record(statement, update::getAsInt, Integer::longValue);
+        }
+
+        public int[] batchUpdate(String statement, Supplier<int[]> batch) {
+            return record(statement, batch, counts -> {
+                long rows = 0;
+                for (int count : counts) {
+                    rows += Math.max(count, 0);
+                }
+                return rows;
+            });
+        }
+
+        public <T> T record(String statement, Supplier<T> action, ToLongFunction<T> rows) {
+            Meters statementMeters = meters.computeIfAbsent(statement, Meters::new);
+            long start = System.nanoTime();
+            try {
+                T result = action.get();
+                statementMeters.rows.record(rows.applyAsLong(result));
+                return result;
+            } finally {
+                statementMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private final class Meters {
+
+            private final Timer timer;
+            private final DistributionSummary rows;
+
+            private Meters(String statement) {
+                this.timer = Timer.builder(TIMER)
+                        .tag("dao", dao)
+                        .tag("statement", statement)
+                        .register(registry);
+                this.rows = DistributionSummary.builder(ROWS)
+                        .tag("dao", dao)
+                        .tag("statement", statement)
+                        .register(registry);
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+public interface AddedLikeListener {
+
+    void likeAdded(long filmId, long userId);
+
+}
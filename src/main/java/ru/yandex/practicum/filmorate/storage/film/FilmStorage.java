@@ -1,8 +1,13 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
@@ -10,18 +15,40 @@ public interface FilmStorage {
 
     Film update(Film user);
 
+    List<Film> addAll(List<Film> films);
+
     List<Film> get();
 
+    List<Film> get(Long after, int limit);
+
+    void stream(Consumer<Film> action);
+
     Film getFilmById(Long id);
 
+    List<Film> getByIds(Collection<Long> ids);
+
+    boolean contains(Long id);
+
+    Set<Long> findExisting(Collection<Long> ids);
+
     void addLike(Long filmId, Long userId);
 
-    void removeLike(Long filmId, Long userId);
+    boolean removeLike(Long filmId, Long userId);
+
+    int[] addLikes(List<FilmLike> likes);
+
+    void streamLikes(AddedLikeListener listener);
+
+    void streamLikes(Instant since, TimedLikeListener listener);
 
     List<Film> getPopular(int count);
 
+    List<Film> getPopular(int count, Integer genreId, Integer mpa, Integer year);
+
     void setFilmGenre(Film film);
 
+    void setFilmGenre(List<Film> films);
+
     void addFilmGenre(Film film);
 
 }
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+public interface LikeListener {
+
+    void likeAdded(long filmId, long userId);
+
+    void likeRemoved(long filmId, long userId);
+
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+
+public interface ReactiveFilmGenreDao {
+
+    Mono<FilmGenre> getGenreById(Integer id);
+
+    Flux<FilmGenre> getGenres();
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+
+public interface ReactiveFilmRatingDao {
+
+    Mono<FilmRating> getRatingById(Integer id);
+
+    Flux<FilmRating> getRatings();
+}
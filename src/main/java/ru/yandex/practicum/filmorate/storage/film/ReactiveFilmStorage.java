@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+
+public interface ReactiveFilmStorage {
+
+    Mono<Film> add(Film film);
+
+    Mono<Film> update(Film film);
+
+    Flux<Film> get();
+
+    Flux<Film> get(Long after, int limit);
+
+    Mono<Film> getFilmById(Long id);
+
+    Mono<Boolean> contains(Long id);
+
+    Mono<Void> addLike(Long filmId, Long userId);
+
+    Mono<Boolean> removeLike(Long filmId, Long userId);
+
+    Flux<Film> getPopular(int count);
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.time.Instant;
+
+public interface TimedLikeListener {
+
+    void likeAdded(long filmId, long userId, Instant createdAt);
+
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.storage.film.FilmGenreDao;
+
+import java.util.List;
+
+@Primary
+@Component("cachedFilmGenreDao")
+@Profile("!reactive")
+public class CachedFilmGenreDao extends ReferenceCache<FilmGenre> implements FilmGenreDao {
+
+    public CachedFilmGenreDao(@Qualifier("filmGenreDaoImpl") FilmGenreDao filmGenre, MeterRegistry registry) {
+        super("genres", filmGenre::getGenres, FilmGenre::getId, registry);
+    }
+
+    @Override
+    public FilmGenre getGenreById(Integer id) {
+        return get(id);
+    }
+
+    @Override
+    public List<FilmGenre> getGenres() {
+        return getAll();
+    }
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.storage.film.FilmRatingDao;
+
+import java.util.List;
+
+@Primary
+@Component("cachedFilmRatingDao")
+@Profile("!reactive")
+public class CachedFilmRatingDao extends ReferenceCache<FilmRating> implements FilmRatingDao {
+
+    public CachedFilmRatingDao(@Qualifier("filmRatingDaoImpl") FilmRatingDao filmRating, MeterRegistry registry) {
+        super("ratings", filmRating::getRatings, FilmRating::getId, registry);
+    }
+
+    @Override
+    public FilmRating getRatingById(Integer id) {
+        return get(id);
+    }
+
+    @Override
+    public List<FilmRating> getRatings() {
+        return getAll();
+    }
+}
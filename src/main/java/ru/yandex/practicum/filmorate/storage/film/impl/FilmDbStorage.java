@@ -1,24 +1,55 @@
 package ru.yandex.practicum.filmorate.storage.film.impl;
 
+import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.storage.IdChunks;
+import ru.yandex.practicum.filmorate.storage.JdbcStreams;
+import ru.yandex.practicum.filmorate.storage.SqlMetrics;
+import ru.yandex.practicum.filmorate.storage.film.AddedLikeListener;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeListener;
+import ru.yandex.practicum.filmorate.storage.film.TimedLikeListener;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
+@Slf4j
 @Primary
 @Component("filmDbStorage")
+@Profile("!in-memory & !reactive")
 public class FilmDbStorage implements FilmStorage {
 
     private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration, " +
@@ -28,30 +59,149 @@ public class FilmDbStorage implements FilmStorage {
     private static final String SELECT_ALL = "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, " +
             "f.rating_id, r.name AS r_name FROM films AS f INNER JOIN rating AS r ON f.rating_id = r.rating_id " +
             "ORDER BY film_id";
+    private static final String SELECT_PAGE = "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, " +
+            "f.rating_id, r.name AS r_name FROM films AS f INNER JOIN rating AS r ON f.rating_id = r.rating_id " +
+            "WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?";
+    private static final String SELECT_ALL_WITH_GENRES = "SELECT f.film_id, f.name, f.description, f.release_date, " +
+            "f.duration, f.rating_id, r.name AS r_name, g.genre_id, g.name AS g_name FROM films AS f " +
+            "INNER JOIN rating AS r ON f.rating_id = r.rating_id LEFT JOIN film_genre AS fg ON f.film_id = fg.film_id " +
+            "LEFT JOIN genres AS g ON fg.genre_id = g.genre_id ORDER BY f.film_id";
     private static final String SELECT_BY_ID = "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, " +
             "f.rating_id, r.name AS r_name FROM films AS f INNER JOIN rating AS r ON f.rating_id = r.rating_id " +
             "WHERE film_id = ?";
-    private static final String INSERT_LIKE = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
+    private static final String SELECT_BY_IDS = "SELECT f.film_id, f.name, f.description, f.release_date, " +
+            "f.duration, f.rating_id, r.name AS r_name FROM films AS f INNER JOIN rating AS r " +
+            "ON f.rating_id = r.rating_id WHERE film_id = ANY(?)";
+    private static final String EXISTS = "SELECT EXISTS (SELECT 1 FROM films WHERE film_id = ?)";
+    private static final String SELECT_EXISTING = "SELECT film_id FROM films WHERE film_id = ANY(?)";
+    private static final String SELECT_EXISTING_USERS = "SELECT user_id FROM users WHERE user_id = ANY(?)";
+    private static final String INSERT_LIKE = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?) " +
+            "ON CONFLICT DO NOTHING";
     private static final String DELETE_LIKE = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+    private static final String SELECT_LIKE_STATE = "SELECT CASE WHEN EXISTS (SELECT 1 FROM film_likes " +
+            "WHERE film_id = ? AND user_id = ?) THEN 2 WHEN EXISTS (SELECT 1 FROM films WHERE film_id = ?) " +
+            "AND EXISTS (SELECT 1 FROM users WHERE user_id = ?) THEN 1 ELSE 0 END";
+    private static final String INCREMENT_LIKES = "UPDATE films SET like_count = like_count + 1 WHERE film_id = ?";
+    private static final String ADD_LIKES = "UPDATE films SET like_count = like_count + ? WHERE film_id = ?";
+    private static final String DECREMENT_LIKES = "UPDATE films SET like_count = like_count - 1 WHERE film_id = ?";
+    private static final String RECOUNT_LIKES = "UPDATE films AS f SET like_count = (SELECT COUNT(*) FROM film_likes " +
+            "AS fl WHERE fl.film_id = f.film_id) WHERE like_count <> (SELECT COUNT(*) FROM film_likes AS fl " +
+            "WHERE fl.film_id = f.film_id)";
+    private static final String SELECT_LIKES = "SELECT film_id, user_id FROM film_likes";
+    private static final String SELECT_LIKES_SINCE = "SELECT film_id, user_id, created_at FROM film_likes " +
+            "WHERE created_at >= ?";
+    private static final String SELECT_LIKE_COUNTS = "SELECT f.film_id, COUNT(fl.user_id) AS likes FROM films AS f " +
+            "LEFT JOIN film_likes AS fl ON f.film_id = fl.film_id GROUP BY f.film_id";
+    private static final String SELECT_LIKE_COUNTS_BY_IDS = "SELECT f.film_id, COUNT(fl.user_id) AS likes " +
+            "FROM films AS f LEFT JOIN film_likes AS fl ON f.film_id = fl.film_id WHERE f.film_id = ANY(?) " +
+            "GROUP BY f.film_id";
+    private static final String SELECT_FILM_KEYS = "SELECT film_id, rating_id, EXTRACT(YEAR FROM release_date) " +
+            "AS release_year FROM films";
+    private static final String SELECT_FILM_GENRE_IDS = "SELECT film_id, genre_id FROM film_genre";
+    private static final String SELECT_POP_FILTERED = "SELECT f.film_id, f.name, f.description, f.release_date, " +
+            "f.duration, f.rating_id, r.name AS r_name FROM films AS f INNER JOIN rating AS r " +
+            "ON f.rating_id = r.rating_id WHERE (CAST(? AS INTEGER) IS NULL OR EXISTS (SELECT 1 FROM film_genre AS fg " +
+            "WHERE fg.film_id = f.film_id AND fg.genre_id = ?)) AND (CAST(? AS INTEGER) IS NULL OR f.rating_id = ?) " +
+            "AND (CAST(? AS INTEGER) IS NULL OR EXTRACT(YEAR FROM f.release_date) = ?) " +
+            "ORDER BY f.like_count DESC, f.film_id LIMIT ?";
     private static final String SELECT_POP = "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, " +
-            "f.rating_id, r.name AS r_name FROM films AS f LEFT JOIN (SELECT film_id, COUNT(user_id) AS user_id FROM " +
-            "film_likes GROUP BY film_id ORDER BY user_id DESC) AS fl ON f.film_id = fl.film_id INNER JOIN rating AS r " +
-            "ON f.rating_id = r.rating_id ORDER BY user_id DESC LIMIT ?";
+            "f.rating_id, r.name AS r_name FROM films AS f INNER JOIN rating AS r ON f.rating_id = r.rating_id " +
+            "ORDER BY f.like_count DESC, f.film_id LIMIT ?";
     private static final String SELECT_GENRE = "SELECT g.genre_id, g.name FROM films AS f INNER JOIN film_genre AS fg " +
             "ON f.film_id = fg.film_id INNER JOIN genres AS g ON fg.genre_id = g.genre_id WHERE f.film_id = ?";
-    private static final String DELETE_GENRE = "DELETE FROM film_genre WHERE film_id = ?";
+    private static final String SELECT_GENRES = "SELECT fg.film_id, g.genre_id, g.name FROM film_genre AS fg " +
+            "INNER JOIN genres AS g ON fg.genre_id = g.genre_id WHERE fg.film_id = ANY(?) ORDER BY fg.film_id, g.genre_id";
+    private static final String SELECT_GENRE_IDS = "SELECT genre_id FROM film_genre WHERE film_id = ?";
+    private static final String DELETE_GENRE = "DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?";
     private static final String INSERT_GENRE = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
     private final JdbcTemplate template;
+    private final SqlMetrics.Recorder sql;
+    private final FilmPopularityIndex popularity = new FilmPopularityIndex();
+    private final LikeWriteBehind writeBehind;
+    private final TransactionTemplate flushTransaction;
+    private final TransactionTemplate likeTransaction;
+    private final List<LikeListener> likeListeners;
 
-    public FilmDbStorage(JdbcTemplate template) {
+    public FilmDbStorage(JdbcTemplate template, SqlMetrics metrics, Optional<LikeWriteBehind> writeBehind,
+                         PlatformTransactionManager transactionManager, List<LikeListener> likeListeners) {
         this.template = template;
+        this.sql = metrics.forDao("film");
+        this.writeBehind = writeBehind.orElse(null);
+        this.likeListeners = likeListeners;
+        // Пачка лайков коммитится отдельно от транзакции, в которой ее сбросили
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.likeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // Рейтинг загружается сверкой счетчиков при старте приложения, см. LikeCountReconciler
+    @PostConstruct
+    public void init() {
+        if (writeBehind != null) {
+            writeBehind.start(this::writeLikes);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    public void loadPopularity() {
+        popularity.rebuild(() -> sql.record("SELECT_LIKE_COUNTS", () -> {
+            Map<Long, Long> likes = new HashMap<>();
+            template.query(SELECT_LIKE_COUNTS, rs -> {
+                likes.put(rs.getLong("film_id"), rs.getLong("likes"));
+            });
+            return likes;
+        }, Map::size), this::loadPopularityKeys, this::countLikes);
+    }
+
+    // Лайки из буфера записываются до подсчета, иначе их не будет ни в базе, ни в перечитанном числе
+    private Map<Long, Long> countLikes(Collection<Long> filmIds) {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+        Map<Long, Long> likes = new HashMap<>();
+        for (Long[] chunk : IdChunks.split(filmIds)) {
+            sql.record("SELECT_LIKE_COUNTS_BY_IDS", () -> {
+                long[] rows = new long[1];
+                template.query(SELECT_LIKE_COUNTS_BY_IDS, rs -> {
+                    rows[0]++;
+                    likes.put(rs.getLong("film_id"), rs.getLong("likes"));
+                }, (Object) chunk);
+                return rows[0];
+            }, Long::longValue);
+        }
+        return likes;
+    }
+
+    private Map<Long, FilmPopularityIndex.Keys> loadPopularityKeys() {
+        Map<Long, List<Integer>> genres = sql.record("SELECT_FILM_GENRE_IDS", () -> {
+            Map<Long, List<Integer>> filmGenres = new HashMap<>();
+            template.query(SELECT_FILM_GENRE_IDS, rs -> {
+                filmGenres.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+            });
+            return filmGenres;
+        }, Map::size);
+        return sql.record("SELECT_FILM_KEYS", () -> {
+            Map<Long, FilmPopularityIndex.Keys> keys = new HashMap<>();
+            template.query(SELECT_FILM_KEYS, rs -> {
+                long filmId = rs.getLong("film_id");
+                keys.put(filmId, new FilmPopularityIndex.Keys(rs.getInt("rating_id"), rs.getInt("release_year"),
+                        genres.getOrDefault(filmId, List.of())));
+            });
+            return keys;
+        }, Map::size);
     }
 
     @Override
     public Film add(Film film) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        template.update(con -> {
+        sql.update("INSERT_FILM", () -> template.update(con -> {
             PreparedStatement ps = con.prepareStatement(INSERT_FILM, new String[]{"film_id"});
             ps.setString(1, film.getName());
             ps.setString(2, film.getDescription());
@@ -59,61 +209,466 @@ public class FilmDbStorage implements FilmStorage {
             ps.setInt(4, film.getDuration());
             ps.setInt(5, film.getMpa().getId());
             return ps;
-        }, keyHolder);
+        }, keyHolder));
 
         film.setId(keyHolder.getKey().longValue());
+        afterCommit(() -> {
+            popularity.setLikes(film.getId(), 0);
+            popularity.setKeys(film.getId(), FilmPopularityIndex.Keys.of(film));
+        });
         return film;
     }
 
     @Override
     public Film update(Film film) {
-        template.update(UPDATE_FILM,
+        sql.update("UPDATE_FILM", () -> template.update(UPDATE_FILM,
                 film.getName(),
                 film.getDescription(),
                 film.getReleaseDate(),
                 film.getDuration(),
                 film.getMpa().getId(),
-                film.getId());
+                film.getId()));
+        afterCommit(() -> popularity.setKeys(film.getId(), FilmPopularityIndex.Keys.of(film)));
         return film;
     }
 
+    @Override
+    @Transactional
+    public List<Film> addAll(List<Film> films) {
+        sql.batchUpdate("INSERT_FILM", () -> template.execute((ConnectionCallback<int[]>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_FILM, new String[]{"film_id"})) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    ps.setInt(4, film.getDuration());
+                    ps.setInt(5, film.getMpa().getId());
+                    ps.addBatch();
+                }
+                int[] inserted = ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Film film : films) {
+                        keys.next();
+                        film.setId(keys.getLong(1));
+                    }
+                }
+                return inserted;
+            }
+        }));
+
+        List<Object[]> genres = new ArrayList<>();
+        for (Film film : films) {
+            for (FilmGenre genre : film.getGenres()) {
+                genres.add(new Object[]{film.getId(), genre.getId()});
+            }
+        }
+        if (!genres.isEmpty()) {
+            sql.batchUpdate("INSERT_GENRE", () -> template.batchUpdate(INSERT_GENRE, genres));
+        }
+        afterCommit(() -> films.forEach(film -> {
+            popularity.setLikes(film.getId(), 0);
+            popularity.setKeys(film.getId(), FilmPopularityIndex.Keys.of(film));
+        }));
+        return films;
+    }
+
     @Override
     public List<Film> get() {
-        return template.query(SELECT_ALL, (rs, rowNum) -> makeFilm(rs));
+        return sql.query("SELECT_ALL", () -> template.query(SELECT_ALL, (rs, rowNum) -> makeFilm(rs)));
+    }
+
+    @Override
+    public List<Film> get(Long after, int limit) {
+        return sql.query("SELECT_PAGE", () -> template.query(SELECT_PAGE, (rs, rowNum) -> makeFilm(rs), after, limit));
+    }
+
+    @Override
+    public void stream(Consumer<Film> action) {
+        sql.record("SELECT_ALL_WITH_GENRES", () -> {
+            long[] rows = new long[1];
+            JdbcStreams.forEach(template, SELECT_ALL_WITH_GENRES, rs -> {
+                Film current = null;
+                while (rs.next()) {
+                    rows[0]++;
+                    long id = rs.getLong("film_id");
+                    if (current == null || current.getId() != id) {
+                        if (current != null) {
+                            action.accept(current);
+                        }
+                        current = makeFilm(rs);
+                    }
+                    int genreId = rs.getInt("genre_id");
+                    if (!rs.wasNull()) {
+                        current.getGenres().add(new FilmGenre(genreId, rs.getString("g_name")));
+                    }
+                }
+                if (current != null) {
+                    action.accept(current);
+                }
+            });
+            return rows[0];
+        }, Long::longValue);
     }
 
     @Override
     public Film getFilmById(Long id) {
-        return template.queryForObject(SELECT_BY_ID, (rs, rowNum) -> makeFilm(rs), id);
+        return sql.queryForObject("SELECT_BY_ID", () ->
+                template.queryForObject(SELECT_BY_ID, (rs, rowNum) -> makeFilm(rs), id));
     }
 
+    @Override
+    public List<Film> getByIds(Collection<Long> ids) {
+        Map<Long, Film> filmsById = findByIds(ids);
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Long id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return films;
+    }
+
+    @Override
+    public boolean contains(Long id) {
+        return Boolean.TRUE.equals(sql.queryForObject("EXISTS", () ->
+                template.queryForObject(EXISTS, Boolean.class, id)));
+    }
+
+    @Override
+    public Set<Long> findExisting(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(sql.query("SELECT_EXISTING", () ->
+                template.queryForList(SELECT_EXISTING, Long.class, (Object) ids.toArray(new Long[0]))));
+    }
+
+    // Без транзакции: постановка в очередь не держит соединение, а заполненная очередь сбрасывается
+    // в базу в потоке запроса, и ожидание сброса с занятым соединением исчерпало бы пул
     @Override
     public void addLike(Long filmId, Long userId) {
-        template.update(INSERT_LIKE, filmId, userId);
+        if (writeBehind != null) {
+            if (writeBehind.set(filmId, userId, true, () -> isLiked(filmId, userId, true))) {
+                likeAdded(filmId, userId);
+            }
+            return;
+        }
+        likeTransaction.executeWithoutResult(status -> {
+            if (sql.update("INSERT_LIKE", () -> template.update(INSERT_LIKE, filmId, userId)) > 0) {
+                sql.update("INCREMENT_LIKES", () -> template.update(INCREMENT_LIKES, filmId));
+                afterCommit(() -> likeAdded(filmId, userId));
+            }
+        });
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        if (writeBehind != null) {
+            if (writeBehind.set(filmId, userId, false, () -> isLiked(filmId, userId, false))) {
+                likeRemoved(filmId, userId);
+                return true;
+            }
+            return false;
+        }
+        return Boolean.TRUE.equals(likeTransaction.execute(status -> {
+            if (sql.update("DELETE_LIKE", () -> template.update(DELETE_LIKE, filmId, userId)) > 0) {
+                sql.update("DECREMENT_LIKES", () -> template.update(DECREMENT_LIKES, filmId));
+                afterCommit(() -> likeRemoved(filmId, userId));
+                return true;
+            }
+            return false;
+        }));
+    }
+
+    @Override
+    @Transactional
+    public int[] addLikes(List<FilmLike> likes) {
+        if (writeBehind != null) {
+            // Импорт должен видеть лайки, еще ожидающие записи
+            writeBehind.flush();
+        }
+        List<Object[]> args = new ArrayList<>(likes.size());
+        for (FilmLike like : likes) {
+            args.add(new Object[]{like.getFilmId(), like.getUserId()});
+        }
+        int[] inserted = sql.batchUpdate("INSERT_LIKE", () -> template.batchUpdate(INSERT_LIKE, args));
+
+        // Счетчики обновляются одним запросом на фильм, а не на каждый лайк
+        Map<Long, Long> added = new HashMap<>();
+        List<FilmLike> insertedLikes = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                added.merge(likes.get(i).getFilmId(), 1L, Long::sum);
+                insertedLikes.add(likes.get(i));
+            }
+        }
+        List<Object[]> counts = new ArrayList<>(added.size());
+        for (Map.Entry<Long, Long> film : added.entrySet()) {
+            counts.add(new Object[]{film.getValue(), film.getKey()});
+        }
+        if (!counts.isEmpty()) {
+            sql.batchUpdate("ADD_LIKES", () -> template.batchUpdate(ADD_LIKES, counts));
+        }
+        afterCommit(() -> {
+            added.forEach(popularity::addLikes);
+            for (FilmLike like : insertedLikes) {
+                likeListeners.forEach(listener -> listener.likeAdded(like.getFilmId(), like.getUserId()));
+            }
+        });
+        return inserted;
     }
 
     @Override
-    public void removeLike(Long filmId, Long userId) {
-        template.update(DELETE_LIKE, filmId, userId);
+    public void streamLikes(AddedLikeListener listener) {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+        sql.record("SELECT_LIKES", () -> {
+            long[] rows = new long[1];
+            JdbcStreams.forEach(template, SELECT_LIKES, rs -> {
+                while (rs.next()) {
+                    rows[0]++;
+                    listener.likeAdded(rs.getLong("film_id"), rs.getLong("user_id"));
+                }
+            });
+            return rows[0];
+        }, Long::longValue);
+    }
+
+    @Override
+    public void streamLikes(Instant since, TimedLikeListener listener) {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+        sql.record("SELECT_LIKES_SINCE", () -> {
+            long[] rows = new long[1];
+            template.query(SELECT_LIKES_SINCE, rs -> {
+                rows[0]++;
+                listener.likeAdded(rs.getLong("film_id"), rs.getLong("user_id"),
+                        rs.getTimestamp("created_at").toInstant());
+            }, Timestamp.from(since));
+            return rows[0];
+        }, Long::longValue);
     }
 
     @Override
     public List<Film> getPopular(int count) {
-        return template.query(SELECT_POP, (rs, rowNum) -> makeFilm(rs), count);
+        List<Long> ids = popularity.getPopular(count);
+        Map<Long, Film> filmsById = findByIds(ids);
+
+        List<Film> films = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = filmsById.get(id);
+            if (film == null) {
+                // Фильм удален в обход хранилища или еще не дошел до реплики: отвечаем из базы,
+                // а индекс поправит ближайшая сверка счетчиков
+                return sql.query("SELECT_POP", () -> template.query(SELECT_POP, (rs, rowNum) -> makeFilm(rs), count));
+            }
+            films.add(film);
+        }
+        return films;
+    }
+
+    @Override
+    public List<Film> getPopular(int count, Integer genreId, Integer mpa, Integer year) {
+        if (genreId == null && mpa == null && year == null) {
+            return getPopular(count);
+        }
+        List<Long> ids = popularity.getPopular(count, genreId, mpa, year);
+        Map<Long, Film> filmsById = findByIds(ids);
+
+        List<Film> films = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = filmsById.get(id);
+            if (film == null) {
+                return sql.query("SELECT_POP_FILTERED", () -> template.query(SELECT_POP_FILTERED,
+                        (rs, rowNum) -> makeFilm(rs), genreId, genreId, mpa, mpa, year, year, count));
+            }
+            films.add(film);
+        }
+        return films;
     }
 
     @Override
     public void setFilmGenre(@NotNull Film film) {
-        film.setGenres(template.query(SELECT_GENRE, (rs, rowNum) ->
+        film.setGenres(sql.query("SELECT_GENRE", () -> template.query(SELECT_GENRE, (rs, rowNum) ->
                         new FilmGenre(rs.getInt("genre_id"), rs.getString("name")),
-                film.getId()));
+                film.getId())));
+    }
+
+    @Override
+    public void setFilmGenre(@NotNull List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setGenres(new ArrayList<>());
+            filmsById.put(film.getId(), film);
+        }
+        for (Long[] chunk : IdChunks.split(filmsById.keySet())) {
+            sql.record("SELECT_GENRES", () -> {
+                long[] rows = new long[1];
+                template.query(SELECT_GENRES, rs -> {
+                    rows[0]++;
+                    filmsById.get(rs.getLong("film_id")).getGenres()
+                            .add(new FilmGenre(rs.getInt("genre_id"), rs.getString("name")));
+                }, (Object) chunk);
+                return rows[0];
+            }, Long::longValue);
+        }
     }
 
     @Override
+    @Transactional
     public void addFilmGenre(@NotNull Film film) {
-        template.update(DELETE_GENRE, film.getId());
+        Set<Integer> stored = new HashSet<>(sql.query("SELECT_GENRE_IDS", () ->
+                template.queryForList(SELECT_GENRE_IDS, Integer.class, film.getId())));
+        List<Object[]> inserts = new ArrayList<>();
+        Set<Integer> requested = new HashSet<>();
         for (FilmGenre genre : film.getGenres()) {
-            template.update(INSERT_GENRE, film.getId(), genre.getId());
+            if (requested.add(genre.getId()) && !stored.contains(genre.getId())) {
+                inserts.add(new Object[]{film.getId(), genre.getId()});
+            }
+        }
+        List<Object[]> deletes = new ArrayList<>();
+        for (Integer genreId : stored) {
+            if (!requested.contains(genreId)) {
+                deletes.add(new Object[]{film.getId(), genreId});
+            }
+        }
+        if (!deletes.isEmpty()) {
+            sql.batchUpdate("DELETE_GENRE", () -> template.batchUpdate(DELETE_GENRE, deletes));
+        }
+        if (!inserts.isEmpty()) {
+            sql.batchUpdate("INSERT_GENRE", () -> template.batchUpdate(INSERT_GENRE, inserts));
+        }
+        afterCommit(() -> popularity.setKeys(film.getId(), FilmPopularityIndex.Keys.of(film)));
+    }
+
+    public int reconcileLikeCounts() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+        int fixed = sql.update("RECOUNT_LIKES", () -> template.update(RECOUNT_LIKES));
+        loadPopularity();
+        return fixed;
+    }
+
+    private Map<Long, Film> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<Long, Film> found = new HashMap<>();
+        for (Long[] chunk : IdChunks.split(ids)) {
+            sql.record("SELECT_BY_IDS", () -> {
+                long[] rows = new long[1];
+                template.query(SELECT_BY_IDS, rs -> {
+                    rows[0]++;
+                    Film film = makeFilm(rs);
+                    found.put(film.getId(), film);
+                }, (Object) chunk);
+                return rows[0];
+            }, Long::longValue);
+        }
+        return found;
+    }
+
+    private void likeAdded(Long filmId, Long userId) {
+        popularity.addLikes(filmId, 1);
+        likeListeners.forEach(listener -> listener.likeAdded(filmId, userId));
+    }
+
+    private void likeRemoved(Long filmId, Long userId) {
+        popularity.addLikes(filmId, -1);
+        likeListeners.forEach(listener -> listener.likeRemoved(filmId, userId));
+    }
+
+    private boolean isLiked(Long filmId, Long userId, boolean adding) {
+        Integer state = sql.queryForObject("SELECT_LIKE_STATE", () ->
+                template.queryForObject(SELECT_LIKE_STATE, Integer.class, filmId, userId, filmId, userId));
+        if (adding && state != null && state == 0) {
+            throw new DataIntegrityViolationException("Фильм с id " + filmId + " или пользователь с id " + userId +
+                    " не найден");
+        }
+        return state != null && state == 2;
+    }
+
+    // Счетчики меняются по фактическому результату вставки и удаления: импорт мог записать те же лайки.
+    // Лайки фильмов и пользователей, которых уже нет в базе, отбрасываются: иначе внешний ключ отклонил бы
+    // всю пачку, а она возвращалась бы в очередь снова и снова
+    private void writeLikes(List<FilmLike> likes, List<FilmLike> removed) {
+        flushTransaction.executeWithoutResult(status -> {
+            List<FilmLike> added = withExistingIds(likes);
+            Map<Long, Long> delta = new HashMap<>();
+            if (!added.isEmpty()) {
+                List<Object[]> args = new ArrayList<>(added.size());
+                added.forEach(like -> args.add(new Object[]{like.getFilmId(), like.getUserId()}));
+                int[] inserted = sql.batchUpdate("INSERT_LIKE", () -> template.batchUpdate(INSERT_LIKE, args));
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i] > 0) {
+                        delta.merge(added.get(i).getFilmId(), 1L, Long::sum);
+                    }
+                }
+            }
+            if (!removed.isEmpty()) {
+                List<Object[]> args = new ArrayList<>(removed.size());
+                removed.forEach(like -> args.add(new Object[]{like.getFilmId(), like.getUserId()}));
+                int[] deleted = sql.batchUpdate("DELETE_LIKE", () -> template.batchUpdate(DELETE_LIKE, args));
+                for (int i = 0; i < deleted.length; i++) {
+                    if (deleted[i] > 0) {
+                        delta.merge(removed.get(i).getFilmId(), -1L, Long::sum);
+                    }
+                }
+            }
+            List<Object[]> counts = new ArrayList<>(delta.size());
+            delta.forEach((filmId, count) -> {
+                if (count != 0) {
+                    counts.add(new Object[]{count, filmId});
+                }
+            });
+            if (!counts.isEmpty()) {
+                sql.batchUpdate("ADD_LIKES", () -> template.batchUpdate(ADD_LIKES, counts));
+            }
+        });
+    }
+
+    private List<FilmLike> withExistingIds(List<FilmLike> likes) {
+        if (likes.isEmpty()) {
+            return likes;
+        }
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        likes.forEach(like -> {
+            filmIds.add(like.getFilmId());
+            userIds.add(like.getUserId());
+        });
+        Set<Long> films = findExisting(filmIds);
+        Set<Long> users = new HashSet<>(sql.query("SELECT_EXISTING_USERS", () ->
+                template.queryForList(SELECT_EXISTING_USERS, Long.class, (Object) userIds.toArray(new Long[0]))));
+        List<FilmLike> existing = new ArrayList<>(likes.size());
+        for (FilmLike like : likes) {
+            if (films.contains(like.getFilmId()) && users.contains(like.getUserId())) {
+                existing.add(like);
+            } else {
+                log.warn("Лайк фильму с id {} от пользователя с id {} не записан: фильм или пользователь не найден",
+                        like.getFilmId(), like.getUserId());
+            }
+        }
+        return existing;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
     }
 
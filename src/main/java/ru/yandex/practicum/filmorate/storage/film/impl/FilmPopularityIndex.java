@@ -0,0 +1,391 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import org.jetbrains.annotations.NotNull;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+// Кроме общего рейтинга, у каждого жанра, рейтинга MPA, года выпуска и пары жанр + MPA есть свой рейтинг
+// с теми же записями. Запрос с фильтрами идет по самому маленькому подходящему рейтингу и проверяет
+// остальные условия по ключам фильма: с годом это не больше фильмов одного года, а без года пара
+// жанр + MPA отвечает точно
+public class FilmPopularityIndex {
+
+    private static final long GENRE = 1L << 40;
+    private static final long MPA = 2L << 40;
+    private static final long YEAR = 3L << 40;
+    private static final long GENRE_MPA = 4L << 40;
+
+    private final ConcurrentMap<Long, Long> likes = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<Long, Keys> keys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Partition> partitions = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Пока снимок загружается, изменения копятся здесь и применяются поверх загруженного снимка
+    private volatile Queue<Runnable> changesDuringRebuild;
+    // Лайки, пришедшие во время загрузки, могли уже попасть в снимок, поэтому прибавлять их нельзя:
+    // для этих фильмов после загрузки перечитывается точное число лайков
+    private volatile ConcurrentMap<Long, Long> likesDuringRebuild;
+
+    // recount возвращает текущее число лайков переданных фильмов
+    public void rebuild(Supplier<Map<Long, Long>> loader, Function<Collection<Long>, Map<Long, Long>> recount) {
+        rebuild(loader, HashMap::new, recount);
+    }
+
+    public synchronized void rebuild(Supplier<Map<Long, Long>> loader, Supplier<Map<Long, Keys>> keysLoader,
+                                     Function<Collection<Long>, Map<Long, Long>> recount) {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ConcurrentLinkedQueue<>();
+            likesDuringRebuild = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Long, Keys> loadedKeys;
+        Map<Long, Long> loadedLikes;
+        try {
+            loadedKeys = keysLoader.get();
+            loadedLikes = loader.get();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+                likesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            likes.clear();
+            ranking.clear();
+            keys.clear();
+            partitions.clear();
+            for (Map.Entry<Long, Long> film : loadedLikes.entrySet()) {
+                Entry entry = new Entry(film.getValue(), film.getKey());
+                likes.put(film.getKey(), film.getValue());
+                ranking.add(entry);
+                Keys filmKeys = loadedKeys.get(film.getKey());
+                if (filmKeys != null) {
+                    keys.put(film.getKey(), filmKeys);
+                    for (long key : filmKeys.partitions) {
+                        partition(key).add(entry);
+                    }
+                }
+            }
+            Queue<Runnable> changes = changesDuringRebuild;
+            Map<Long, Long> changedLikes = likesDuringRebuild;
+            changesDuringRebuild = null;
+            likesDuringRebuild = null;
+            changes.forEach(Runnable::run);
+            recountLikes(changedLikes, recount);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Новые ключи фильма: сначала он добавляется в новые рейтинги, потом удаляется из старых
+    public void setKeys(Long filmId, Keys filmKeys) {
+        lock.readLock().lock();
+        try {
+            likes.compute(filmId, (id, old) -> {
+                long current = old == null ? 0 : old;
+                Entry entry = new Entry(current, id);
+                if (old == null) {
+                    ranking.add(entry);
+                }
+                Keys previous = keys.put(id, filmKeys);
+                for (long key : filmKeys.partitions) {
+                    partition(key).add(entry);
+                }
+                if (previous != null) {
+                    for (long key : previous.partitions) {
+                        if (!filmKeys.contains(key)) {
+                            partition(key).remove(entry);
+                        }
+                    }
+                }
+                return current;
+            });
+            record(() -> setKeys(filmId, filmKeys));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setLikes(Long filmId, long count) {
+        lock.readLock().lock();
+        try {
+            update(filmId, old -> count);
+            record(() -> setLikes(filmId, count));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addLikes(Long filmId, long delta) {
+        lock.readLock().lock();
+        try {
+            update(filmId, old -> old + delta);
+            Map<Long, Long> changedLikes = likesDuringRebuild;
+            if (changedLikes != null) {
+                changedLikes.merge(filmId, delta, Long::sum);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(Long filmId) {
+        lock.readLock().lock();
+        try {
+            record(() -> remove(filmId));
+            likes.computeIfPresent(filmId, (id, old) -> {
+                Entry entry = new Entry(old, id);
+                ranking.remove(entry);
+                Keys filmKeys = keys.remove(id);
+                if (filmKeys != null) {
+                    for (long key : filmKeys.partitions) {
+                        partition(key).remove(entry);
+                    }
+                }
+                return null;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getLikes(Long filmId) {
+        return likes.getOrDefault(filmId, 0L);
+    }
+
+    public List<Long> getPopular(int count) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Entry entry : ranking) {
+            if (ids.size() >= count) {
+                break;
+            }
+            ids.add(entry.filmId);
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // Фильтры, равные null, не применяются
+    public List<Long> getPopular(int count, Integer genreId, Integer mpa, Integer year) {
+        List<Long> candidates = new ArrayList<>(2);
+        if (genreId != null && mpa != null) {
+            candidates.add(GENRE_MPA | (long) genreId << 20 | mpa);
+        } else if (genreId != null) {
+            candidates.add(GENRE | genreId);
+        } else if (mpa != null) {
+            candidates.add(MPA | mpa);
+        }
+        if (year != null) {
+            candidates.add(YEAR | year);
+        }
+        if (candidates.isEmpty()) {
+            return getPopular(count);
+        }
+        Partition smallest = null;
+        for (long key : candidates) {
+            Partition partition = partitions.get(key);
+            if (partition == null) {
+                return new ArrayList<>();
+            }
+            if (smallest == null || partition.size.get() < smallest.size.get()) {
+                smallest = partition;
+            }
+        }
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Entry entry : smallest.ranking) {
+            if (ids.size() >= count) {
+                break;
+            }
+            Keys filmKeys = keys.get(entry.filmId);
+            if (filmKeys != null && filmKeys.matches(genreId, mpa, year)) {
+                ids.add(entry.filmId);
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private Partition partition(long key) {
+        return partitions.computeIfAbsent(key, k -> new Partition());
+    }
+
+    // Изменение записывается под блокировкой чтения: снимок заменяется под блокировкой записи,
+    // поэтому каждое изменение либо попадает в очередь, либо применяется уже к новому снимку
+    private void record(Runnable change) {
+        Queue<Runnable> changes = changesDuringRebuild;
+        if (changes != null) {
+            changes.add(change);
+        }
+    }
+
+    // Вызывается под блокировкой записи, поэтому новые лайки ждут окончания перечитывания и ложатся поверх
+    // него. Удаленные за время загрузки фильмы в индекс не возвращаются. Если перечитать не удалось,
+    // применяются накопленные изменения: лайк, уже попавший в снимок, посчитается дважды до следующей сверки
+    private void recountLikes(Map<Long, Long> changedLikes, Function<Collection<Long>, Map<Long, Long>> recount) {
+        if (changedLikes.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> counts;
+        try {
+            counts = recount.apply(changedLikes.keySet());
+        } catch (RuntimeException e) {
+            changedLikes.forEach((filmId, delta) -> {
+                if (likes.containsKey(filmId)) {
+                    update(filmId, old -> old + delta);
+                }
+            });
+            throw e;
+        }
+        counts.forEach((filmId, count) -> {
+            if (likes.containsKey(filmId)) {
+                update(filmId, old -> count);
+            }
+        });
+    }
+
+    // Вызывается под блокировкой чтения или записи
+    private void update(Long filmId, LongUnaryOperator operator) {
+        likes.compute(filmId, (id, old) -> {
+            long current = old == null ? 0 : old;
+            long updated = operator.applyAsLong(current);
+            if (old == null || updated != current) {
+                // Новая запись добавляется раньше удаления старой, чтобы читатели не потеряли фильм
+                Entry entry = new Entry(updated, id);
+                ranking.add(entry);
+                if (old != null) {
+                    ranking.remove(new Entry(current, id));
+                }
+                Keys filmKeys = keys.get(id);
+                if (filmKeys != null) {
+                    for (long key : filmKeys.partitions) {
+                        Partition partition = partition(key);
+                        partition.ranking.add(entry);
+                        partition.ranking.remove(new Entry(current, id));
+                    }
+                }
+            }
+            return updated;
+        });
+    }
+
+    // Жанры, рейтинг MPA и год выпуска фильма
+    public static final class Keys {
+
+        private final int mpa;
+        private final int year;
+        private final int[] genres;
+        private final long[] partitions;
+
+        public Keys(int mpa, int year, Collection<Integer> genreIds) {
+            this.mpa = mpa;
+            this.year = year;
+            this.genres = genreIds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+            this.partitions = new long[2 + 2 * genres.length];
+            partitions[0] = MPA | mpa;
+            partitions[1] = YEAR | year;
+            for (int i = 0; i < genres.length; i++) {
+                partitions[2 + 2 * i] = GENRE | genres[i];
+                partitions[3 + 2 * i] = GENRE_MPA | (long) genres[i] << 20 | mpa;
+            }
+        }
+
+        public static Keys of(Film film) {
+            List<Integer> genreIds = new ArrayList<>(film.getGenres().size());
+            film.getGenres().forEach(genre -> genreIds.add(genre.getId()));
+            return new Keys(film.getMpa().getId(), film.getReleaseDate().getYear(), genreIds);
+        }
+
+        private boolean matches(Integer genreId, Integer mpa, Integer year) {
+            return (genreId == null || Arrays.binarySearch(genres, genreId) >= 0)
+                    && (mpa == null || this.mpa == mpa)
+                    && (year == null || this.year == year);
+        }
+
+        private boolean contains(long partition) {
+            for (long key : partitions) {
+                if (key == partition) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Размер считается отдельно: у ConcurrentSkipListSet он вычисляется обходом всего набора
+    private static final class Partition {
+
+        private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private void add(Entry entry) {
+            if (ranking.add(entry)) {
+                size.incrementAndGet();
+            }
+        }
+
+        private void remove(Entry entry) {
+            if (ranking.remove(entry)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final long likes;
+        private final long filmId;
+
+        private Entry(long likes, long filmId) {
+            this.likes = likes;
+            this.filmId = filmId;
+        }
+
+        @Override
+        public int compareTo(@NotNull Entry other) {
+            int result = Long.compare(other.likes, likes);
+            return result != 0 ? result : Long.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return likes == entry.likes && filmId == entry.filmId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(likes, filmId);
+        }
+    }
+}
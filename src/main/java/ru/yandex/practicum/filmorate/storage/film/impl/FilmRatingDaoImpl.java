@@ -1,32 +1,37 @@
 package ru.yandex.practicum.filmorate.storage.film.impl;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.storage.SqlMetrics;
 import ru.yandex.practicum.filmorate.storage.film.FilmRatingDao;
 
 import java.util.List;
 
 @Component
+@Profile("!reactive")
 public class FilmRatingDaoImpl implements FilmRatingDao {
 
     private static final String SELECT_BY_ID = "SELECT * FROM rating WHERE rating_id = ?";
     private static final String SELECT_ALL = "SELECT * FROM rating ORDER BY rating_id";
     private final JdbcTemplate template;
+    private final SqlMetrics.Recorder sql;
 
-    public FilmRatingDaoImpl(JdbcTemplate template) {
+    public FilmRatingDaoImpl(JdbcTemplate template, SqlMetrics metrics) {
         this.template = template;
+        this.sql = metrics.forDao("rating");
     }
 
     @Override
     public FilmRating getRatingById(Integer id) {
-        return template.queryForObject(SELECT_BY_ID, (rs, rowNum) ->
-                new FilmRating(rs.getInt("rating_id"), rs.getString("name")), id);
+        return sql.queryForObject("SELECT_BY_ID", () -> template.queryForObject(SELECT_BY_ID, (rs, rowNum) ->
+                new FilmRating(rs.getInt("rating_id"), rs.getString("name")), id));
     }
 
     @Override
     public List<FilmRating> getRatings() {
-        return template.query(SELECT_ALL, (rs, rowNum) ->
-                new FilmRating(rs.getInt("rating_id"), rs.getString("name")));
+        return sql.query("SELECT_ALL", () -> template.query(SELECT_ALL, (rs, rowNum) ->
+                new FilmRating(rs.getInt("rating_id"), rs.getString("name"))));
     }
 }
@@ -0,0 +1,462 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Обратный индекс по названиям и описаниям фильмов: терм -> отсортированные id фильмов и частоты терма
+@Slf4j
+@Component
+@Profile("!reactive")
+public class FilmSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Слово из названия весит как несколько слов описания
+    private static final int NAME_WEIGHT = 3;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final int MIN_PREFIX = 2;
+    private static final int MAX_EXPANSIONS = 64;
+    // Фильмы из списков длиннее этого только получают очки, если уже найдены по более редким термам
+    private static final int SCAN_LIMIT = 50_000;
+    // Окончания падежей и форм прилагательных, самые длинные первыми
+    private static final String[] RUSSIAN_ENDINGS = {"иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими",
+            "иях", "ией", "ием", "ах", "ях", "ов", "ев", "ей", "ой", "ом", "ем", "ам", "ям", "ая", "яя", "ое", "ее",
+            "ые", "ие", "ый", "ий", "ую", "юю", "а", "я", "ы", "и", "у", "ю", "е", "о", "ь"};
+    private static final int MIN_STEM = 3;
+
+    private final FilmStorage filmStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    // Пока индекс перестраивается, изменения копятся здесь и применяются поверх загруженного снимка
+    private List<Film> changesDuringRebuild;
+
+    public FilmSearchIndex(FilmStorage filmStorage, MeterRegistry registry) {
+        this.filmStorage = filmStorage;
+        Gauge.builder("filmorate.search.index.films", this, search -> search.stats().getFilms())
+                .register(registry);
+        Gauge.builder("filmorate.search.index.terms", this, search -> search.stats().getTerms())
+                .register(registry);
+        Gauge.builder("filmorate.search.index.postings", this, search -> search.stats().getPostings())
+                .register(registry);
+        Gauge.builder("filmorate.search.index.size", this, search -> search.stats().getBytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Index rebuilt = new Index();
+        try {
+            filmStorage.stream(rebuilt::add);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(rebuilt::add);
+            changesDuringRebuild = null;
+            index = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Построен поисковый индекс: {}", stats());
+    }
+
+    public void index(@NotNull Film film) {
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(film);
+            }
+            index.add(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Каждое слово запроса ищется целиком и как префикс более длинных термов. Фильмы ранжируются
+    // по сумме BM25 найденных термов, при равенстве - по возрастанию id
+    public List<Long> search(String query, int limit) {
+        Set<String> tokens = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            return index.search(tokens, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            return index.stats();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c == 'ё' ? 'е' : c);
+            } else if (token.length() > 0) {
+                tokens.add(stem(token.toString()));
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(stem(token.toString()));
+        }
+        return tokens;
+    }
+
+    // Легкий стемминг: разные формы одного слова сводятся к общей основе, а префиксный поиск
+    // добирает то, что он не покрывает. Запрос проходит через тот же стемминг, что и фильмы
+    static String stem(String token) {
+        char last = token.charAt(token.length() - 1);
+        if (last >= 'а' && last <= 'я') {
+            for (String ending : RUSSIAN_ENDINGS) {
+                if (token.length() - ending.length() >= MIN_STEM && token.endsWith(ending)) {
+                    return token.substring(0, token.length() - ending.length());
+                }
+            }
+        } else if (last == 's' && token.length() > MIN_STEM + 1 && !token.endsWith("ss")) {
+            return token.endsWith("ies") ? token.substring(0, token.length() - 3) + "y"
+                    : token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+
+    public static final class Stats {
+
+        private final int films;
+        private final int terms;
+        private final long postings;
+        private final long bytes;
+
+        private Stats(int films, int terms, long postings, long bytes) {
+            this.films = films;
+            this.terms = terms;
+            this.postings = postings;
+            this.bytes = bytes;
+        }
+
+        public int getFilms() {
+            return films;
+        }
+
+        public int getTerms() {
+            return terms;
+        }
+
+        public long getPostings() {
+            return postings;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "фильмов " + films + ", термов " + terms + ", вхождений " + postings + ", ~"
+                    + bytes / (1024 * 1024) + " МБ";
+        }
+    }
+
+    private static final class Index {
+
+        private final NavigableMap<String, Postings> terms = new TreeMap<>();
+        private String[][] termsByFilm = new String[0][];
+        private int[] lengths = new int[0];
+        private long totalLength;
+        private int films;
+
+        private void add(@NotNull Film film) {
+            int id = Math.toIntExact(film.getId());
+            remove(id);
+            Map<String, Integer> frequencies = new LinkedHashMap<>();
+            for (String token : tokenize(film.getName())) {
+                frequencies.merge(token, NAME_WEIGHT, Integer::sum);
+            }
+            for (String token : tokenize(film.getDescription())) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            if (id >= termsByFilm.length) {
+                int capacity = Math.max(id + 1, termsByFilm.length * 2);
+                termsByFilm = Arrays.copyOf(termsByFilm, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            String[] filmTerms = new String[frequencies.size()];
+            int length = 0;
+            int i = 0;
+            for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+                Postings postings = terms.computeIfAbsent(frequency.getKey(), Postings::new);
+                postings.put(id, frequency.getValue());
+                // В массиве фильма хранится тот же экземпляр строки, что и в словаре
+                filmTerms[i++] = postings.term;
+                length += frequency.getValue();
+            }
+            termsByFilm[id] = filmTerms;
+            lengths[id] = length;
+            totalLength += length;
+            films++;
+        }
+
+        private void remove(int id) {
+            if (id >= termsByFilm.length || termsByFilm[id] == null) {
+                return;
+            }
+            for (String term : termsByFilm[id]) {
+                Postings postings = terms.get(term);
+                postings.remove(id);
+                if (postings.size == 0) {
+                    terms.remove(term);
+                }
+            }
+            termsByFilm[id] = null;
+            totalLength -= lengths[id];
+            lengths[id] = 0;
+            films--;
+        }
+
+        private List<Long> search(Set<String> tokens, int limit) {
+            if (films == 0 || tokens.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Postings> matches = new ArrayList<>();
+            List<Double> weights = new ArrayList<>();
+            for (String token : tokens) {
+                Postings exact = terms.get(token);
+                if (exact != null) {
+                    matches.add(exact);
+                    weights.add(1.0);
+                }
+                if (token.length() < MIN_PREFIX) {
+                    continue;
+                }
+                // Самые короткие продолжения идут первыми в лексикографическом порядке
+                int expansions = 0;
+                for (Postings postings : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                    if (expansions++ == MAX_EXPANSIONS) {
+                        break;
+                    }
+                    matches.add(postings);
+                    weights.add(PREFIX_WEIGHT);
+                }
+            }
+            Integer[] order = new Integer[matches.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> matches.get(i).size));
+
+            double averageLength = (double) totalLength / films;
+            Scores scores = new Scores(64);
+            for (int i : order) {
+                Postings postings = matches.get(i);
+                double idf = Math.log(1 + (films - postings.size + 0.5) / (postings.size + 0.5));
+                double weight = weights.get(i) * idf;
+                if (postings.size > SCAN_LIMIT && scores.size > 0) {
+                    for (int id : scores.keys()) {
+                        int index = Arrays.binarySearch(postings.films, 0, postings.size, id);
+                        if (index >= 0) {
+                            scores.add(id, weight * bm25(postings.frequencies[index], lengths[id], averageLength));
+                        }
+                    }
+                } else {
+                    for (int j = 0; j < postings.size; j++) {
+                        int id = postings.films[j];
+                        scores.add(id, weight * bm25(postings.frequencies[j], lengths[id], averageLength));
+                    }
+                }
+            }
+            return scores.top(limit);
+        }
+
+        private static double bm25(int frequency, int length, double averageLength) {
+            return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+        }
+
+        // Оценка по размерам массивов и строк без заголовков TreeMap и выравнивания
+        private Stats stats() {
+            long postings = 0;
+            long bytes = 16L * termsByFilm.length + 4L * lengths.length;
+            for (Postings term : terms.values()) {
+                postings += term.size;
+                bytes += 8L * term.films.length + 40 + 2L * term.term.length() + 48;
+            }
+            for (String[] filmTerms : termsByFilm) {
+                if (filmTerms != null) {
+                    bytes += 16 + 4L * filmTerms.length;
+                }
+            }
+            return new Stats(films, terms.size(), postings, bytes);
+        }
+    }
+
+    private static final class Postings {
+
+        private final String term;
+        private int[] films = new int[1];
+        private int[] frequencies = new int[1];
+        private int size;
+
+        private Postings(String term) {
+            this.term = term;
+        }
+
+        // При загрузке фильмы идут по возрастанию id, поэтому обычно это запись в конец
+        private void put(int film, int frequency) {
+            int index = size > 0 && films[size - 1] < film ? -size - 1 : Arrays.binarySearch(films, 0, size, film);
+            if (index >= 0) {
+                frequencies[index] = frequency;
+                return;
+            }
+            index = -index - 1;
+            if (size == films.length) {
+                films = Arrays.copyOf(films, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(films, index, films, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            films[index] = film;
+            frequencies[index] = frequency;
+            size++;
+        }
+
+        private void remove(int film) {
+            int index = Arrays.binarySearch(films, 0, size, film);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(films, index + 1, films, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+        }
+    }
+
+    // Накопитель очков int -> double с открытой адресацией: id начинаются с 1, 0 обозначает пустую ячейку
+    private static final class Scores {
+
+        private int[] keys;
+        private double[] values;
+        private int size;
+
+        private Scores(int capacity) {
+            keys = new int[capacity];
+            values = new double[capacity];
+        }
+
+        private void add(int key, double score) {
+            int slot = slot(keys, key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slot(keys, key);
+                }
+            }
+            values[slot] += score;
+        }
+
+        private int[] keys() {
+            int[] result = new int[size];
+            int i = 0;
+            for (int key : keys) {
+                if (key != 0) {
+                    result[i++] = key;
+                }
+            }
+            return result;
+        }
+
+        private List<Long> top(int limit) {
+            List<Integer> slots = new ArrayList<>();
+            Comparator<Integer> rank = Comparator.<Integer>comparingDouble(slot -> values[slot])
+                    .thenComparing(slot -> -keys[slot]);
+            PriorityQueue<Integer> heap = new PriorityQueue<>(rank);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == 0) {
+                    continue;
+                }
+                if (heap.size() < limit) {
+                    heap.add(slot);
+                } else if (rank.compare(slot, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(slot);
+                }
+            }
+            slots.addAll(heap);
+            slots.sort(rank.reversed());
+            List<Long> result = new ArrayList<>(slots.size());
+            for (int slot : slots) {
+                result.add((long) keys[slot]);
+            }
+            return result;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new double[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
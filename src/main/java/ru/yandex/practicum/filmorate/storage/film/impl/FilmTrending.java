@@ -0,0 +1,293 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.LikeListener;
+import ru.yandex.practicum.filmorate.storage.film.TimedLikeListener;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+// Лайки за последние час, сутки и неделю по фильмам. У каждого фильма суммы по окнам: новый лайк
+// увеличивает их и встает в очередь каждого окна на минуту, в которую из него выйдет. Со временем
+// из сумм вычитаются только лайки, срок которых наступил, без обхода всех фильмов.
+// Суммы каждого окна хранятся в своем рейтинге, как общее число лайков для /films/popular
+@Slf4j
+@Component
+@Profile("!reactive")
+public class FilmTrending implements LikeListener {
+
+    public enum Window {
+        HOUR("1h"), DAY("24h"), WEEK("7d");
+
+        private final String label;
+
+        Window(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final int MINUTES = 60;
+    private static final int HOURS = 168;
+    private static final int DAY_HOURS = 24;
+
+    private final Clock clock;
+    private final Lock lock = new ReentrantLock();
+    private Buckets buckets;
+    // Пока счетчики перестраиваются, изменения копятся здесь и применяются поверх загруженного снимка
+    private List<long[]> changesDuringRebuild;
+
+    @Autowired
+    public FilmTrending() {
+        this(Clock.systemUTC());
+    }
+
+    public FilmTrending(Clock clock) {
+        this.clock = clock;
+        this.buckets = new Buckets(currentMinute());
+    }
+
+    public Instant windowStart() {
+        return Instant.ofEpochMilli(TimeUnit.HOURS.toMillis(currentMinute() / MINUTES - HOURS + 1));
+    }
+
+    // loader передает все лайки, поставленные не раньше указанного момента
+    public synchronized void rebuild(BiConsumer<Instant, TimedLikeListener> loader) {
+        lock.lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        Buckets rebuilt = new Buckets(currentMinute());
+        long[] likes = new long[1];
+        try {
+            loader.accept(windowStart(), (filmId, userId, createdAt) -> {
+                rebuilt.add(filmId, userId, TimeUnit.MILLISECONDS.toMinutes(createdAt.toEpochMilli()));
+                likes[0]++;
+            });
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        lock.lock();
+        try {
+            buckets = rebuilt;
+            buckets.advance(currentMinute());
+            for (long[] change : changesDuringRebuild) {
+                if (change[3] > 0) {
+                    buckets.add(change[0], change[1], change[2]);
+                } else {
+                    buckets.remove(change[0], change[1]);
+                }
+            }
+            log.debug("Счетчики трендов перестроены: {} лайков, изменений во время загрузки {}", likes[0],
+                    changesDuringRebuild.size());
+            changesDuringRebuild = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void likeAdded(long filmId, long userId) {
+        lock.lock();
+        try {
+            long minute = currentMinute();
+            buckets.advance(minute);
+            buckets.add(filmId, userId, minute);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(new long[]{filmId, userId, minute, 1});
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void likeRemoved(long filmId, long userId) {
+        lock.lock();
+        try {
+            buckets.advance(currentMinute());
+            buckets.remove(filmId, userId);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(new long[]{filmId, userId, 0, 0});
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Фильмы с наибольшим числом лайков в окне, при равенстве - с меньшим id
+    public List<Long> getTrending(Window window, int count) {
+        lock.lock();
+        try {
+            buckets.advance(currentMinute());
+            return buckets.top(window, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(clock.millis());
+    }
+
+    private static final class Buckets {
+
+        private final Map<Long, Counters> films = new HashMap<>();
+        // Минута каждого лайка в окне недели: по ней снятый лайк находится в очередях выхода из окон
+        private final Map<Long, Long> likedAt = new HashMap<>();
+        // Для каждого окна лайки, сгруппированные по минуте, в которую они из него выходят
+        private final Map<Window, TreeMap<Long, Set<Long>>> expiries = new EnumMap<>(Window.class);
+        // Фильмы с лайками в окне, упорядоченные по их числу: чтение списка не обходит все фильмы
+        private final Map<Window, FilmPopularityIndex> rankings = new EnumMap<>(Window.class);
+        private long minute;
+
+        private Buckets(long minute) {
+            this.minute = minute;
+            for (Window window : Window.values()) {
+                expiries.put(window, new TreeMap<>());
+                rankings.put(window, new FilmPopularityIndex());
+            }
+        }
+
+        private void add(long filmId, long userId, long likeMinute) {
+            // Время из базы может немного опережать часы приложения
+            likeMinute = Math.min(likeMinute, minute);
+            long key = likeKey(filmId, userId);
+            if (expiry(Window.WEEK, likeMinute) <= minute || likedAt.putIfAbsent(key, likeMinute) != null) {
+                return;
+            }
+            Counters counters = films.computeIfAbsent(filmId, id -> new Counters());
+            for (Window window : Window.values()) {
+                long expiry = expiry(window, likeMinute);
+                if (expiry > minute) {
+                    expiries.get(window).computeIfAbsent(expiry, m -> new HashSet<>()).add(key);
+                    counters.add(window, 1);
+                }
+            }
+            rank(filmId, counters);
+        }
+
+        private void remove(long filmId, long userId) {
+            long key = likeKey(filmId, userId);
+            Long likeMinute = likedAt.remove(key);
+            Counters counters = films.get(filmId);
+            if (likeMinute == null || counters == null) {
+                return;
+            }
+            for (Window window : Window.values()) {
+                TreeMap<Long, Set<Long>> queue = expiries.get(window);
+                long expiry = expiry(window, likeMinute);
+                Set<Long> likes = queue.get(expiry);
+                if (likes != null && likes.remove(key)) {
+                    counters.add(window, -1);
+                    if (likes.isEmpty()) {
+                        queue.remove(expiry);
+                    }
+                }
+            }
+            rank(filmId, counters);
+        }
+
+        // Из окон выходят только лайки, срок которых наступил: работа пропорциональна их числу,
+        // а не числу фильмов с лайками за неделю
+        private void advance(long now) {
+            if (now <= minute) {
+                return;
+            }
+            minute = now;
+            Set<Long> changed = new HashSet<>();
+            for (Window window : Window.values()) {
+                TreeMap<Long, Set<Long>> queue = expiries.get(window);
+                while (!queue.isEmpty() && queue.firstKey() <= minute) {
+                    for (long key : queue.pollFirstEntry().getValue()) {
+                        long filmId = key >>> 32;
+                        films.get(filmId).add(window, -1);
+                        if (window == Window.WEEK) {
+                            likedAt.remove(key);
+                        }
+                        changed.add(filmId);
+                    }
+                }
+            }
+            for (long filmId : changed) {
+                rank(filmId, films.get(filmId));
+            }
+        }
+
+        private List<Long> top(Window window, int count) {
+            return rankings.get(window).getPopular(count);
+        }
+
+        // В рейтинг окна попадают только фильмы с лайками в нем; фильм без лайков за неделю забывается
+        private void rank(long filmId, Counters counters) {
+            for (Window window : Window.values()) {
+                FilmPopularityIndex ranking = rankings.get(window);
+                int likes = counters.get(window);
+                if (likes > 0) {
+                    ranking.setLikes(filmId, likes);
+                } else {
+                    ranking.remove(filmId);
+                }
+            }
+            if (counters.get(Window.WEEK) == 0) {
+                films.remove(filmId);
+            }
+        }
+
+        // Минута, начиная с которой лайк не входит в окно. Часовое окно сдвигается каждую минуту,
+        // сутки и неделя - каждый час
+        private static long expiry(Window window, long likeMinute) {
+            switch (window) {
+                case HOUR:
+                    return likeMinute + MINUTES;
+                case DAY:
+                    return (likeMinute / MINUTES + DAY_HOURS) * MINUTES;
+                default:
+                    return (likeMinute / MINUTES + HOURS) * MINUTES;
+            }
+        }
+
+        private static long likeKey(long filmId, long userId) {
+            return Math.toIntExact(filmId) * (1L << 32) + Math.toIntExact(userId);
+        }
+    }
+
+    private static final class Counters {
+
+        private final int[] likes = new int[Window.values().length];
+
+        private int get(Window window) {
+            return likes[window.ordinal()];
+        }
+
+        private void add(Window window, int delta) {
+            likes[window.ordinal()] += delta;
+        }
+    }
+}
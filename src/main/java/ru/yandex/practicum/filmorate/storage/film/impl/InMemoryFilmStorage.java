@@ -1,63 +1,283 @@
 package ru.yandex.practicum.filmorate.storage.film.impl;
 
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.SortedArrays;
+import ru.yandex.practicum.filmorate.storage.film.AddedLikeListener;
+import ru.yandex.practicum.filmorate.storage.film.FilmRatingDao;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeListener;
+import ru.yandex.practicum.filmorate.storage.film.TimedLikeListener;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component
+@Profile("in-memory")
 public class InMemoryFilmStorage implements FilmStorage {
 
-    private final Map<Long, Film> films = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Long, long[]> likes = new ConcurrentHashMap<>();
+    // Время лайков, как столбец created_at в базе: по нему счетчики трендов восстанавливаются после сброса
+    private final ConcurrentMap<Long, ConcurrentMap<Long, Instant>> likedAt = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, List<FilmGenre>> genres = new ConcurrentHashMap<>();
+    private final FilmPopularityIndex popularity = new FilmPopularityIndex();
+    private final AtomicLong ids = new AtomicLong();
+    private final UserStorage userStorage;
+    private final FilmRatingDao filmRating;
+    private final List<LikeListener> likeListeners;
+
+    public InMemoryFilmStorage(UserStorage userStorage, FilmRatingDao filmRating, List<LikeListener> likeListeners) {
+        this.userStorage = userStorage;
+        this.filmRating = filmRating;
+        this.likeListeners = likeListeners;
+    }
 
     @Override
     public Film add(Film film) {
-        films.put(film.getId(), film);
+        Film stored = stored(film);
+        film.setId(ids.incrementAndGet());
+        stored.setId(film.getId());
+        films.put(film.getId(), stored);
+        popularity.setLikes(film.getId(), 0);
+        popularity.setKeys(film.getId(), FilmPopularityIndex.Keys.of(stored));
         return film;
     }
 
     @Override
     public Film update(Film film) {
-        films.put(film.getId(), film);
+        Film stored = stored(film);
+        if (films.replace(film.getId(), stored) != null) {
+            stored.setGenres(genres.getOrDefault(film.getId(), List.of()));
+            popularity.setKeys(film.getId(), FilmPopularityIndex.Keys.of(stored));
+        }
         return film;
     }
 
+    @Override
+    public List<Film> addAll(List<Film> films) {
+        for (Film film : films) {
+            add(film);
+            addFilmGenre(film);
+        }
+        return films;
+    }
+
     @Override
     public List<Film> get() {
-        return new ArrayList<>(films.values());
+        return films.values().stream()
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> get(Long after, int limit) {
+        return films.tailMap(after, false).values().stream()
+                .limit(limit)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void stream(Consumer<Film> action) {
+        for (Film film : films.values()) {
+            Film result = copy(film);
+            setFilmGenre(result);
+            action.accept(result);
+        }
     }
 
     @Override
     public Film getFilmById(Long id) {
-        return null;
+        Film film = films.get(id);
+        if (film == null) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return copy(film);
+    }
+
+    @Override
+    public List<Film> getByIds(Collection<Long> ids) {
+        List<Film> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.add(copy(film));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Long id) {
+        return films.containsKey(id);
+    }
+
+    @Override
+    public Set<Long> findExisting(Collection<Long> ids) {
+        return ids.stream().filter(films::containsKey).collect(Collectors.toSet());
     }
 
     @Override
     public void addLike(Long filmId, Long userId) {
+        insertLike(filmId, userId);
+    }
 
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        boolean[] removed = new boolean[1];
+        likes.computeIfPresent(filmId, (id, users) -> {
+            long[] updated = SortedArrays.remove(users, userId);
+            removed[0] = updated != users;
+            if (removed[0]) {
+                likedAt.computeIfPresent(filmId, (key, times) -> {
+                    times.remove(userId);
+                    return times;
+                });
+            }
+            return updated;
+        });
+        if (removed[0]) {
+            popularity.addLikes(filmId, -1);
+            likeListeners.forEach(listener -> listener.likeRemoved(filmId, userId));
+        }
+        return removed[0];
     }
 
     @Override
-    public void removeLike(Long filmId, Long userId) {
+    public int[] addLikes(List<FilmLike> likes) {
+        int[] inserted = new int[likes.size()];
+        for (int i = 0; i < inserted.length; i++) {
+            inserted[i] = insertLike(likes.get(i).getFilmId(), likes.get(i).getUserId()) ? 1 : 0;
+        }
+        return inserted;
+    }
 
+    @Override
+    public void streamLikes(AddedLikeListener listener) {
+        likes.forEach((filmId, users) -> {
+            for (long userId : users) {
+                listener.likeAdded(filmId, userId);
+            }
+        });
+    }
+
+    @Override
+    public void streamLikes(Instant since, TimedLikeListener listener) {
+        likedAt.forEach((filmId, users) -> users.forEach((userId, createdAt) -> {
+            if (!createdAt.isBefore(since)) {
+                listener.likeAdded(filmId, userId, createdAt);
+            }
+        }));
     }
 
     @Override
     public List<Film> getPopular(int count) {
-        return null;
+        List<Film> result = new ArrayList<>(count);
+        for (Long id : popularity.getPopular(count)) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.add(copy(film));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Film> getPopular(int count, Integer genreId, Integer mpa, Integer year) {
+        List<Film> result = new ArrayList<>(count);
+        for (Long id : popularity.getPopular(count, genreId, mpa, year)) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.add(copy(film));
+            }
+        }
+        return result;
     }
 
     @Override
-    public void setFilmGenre(Film film) {
+    public void setFilmGenre(@NotNull Film film) {
+        film.setGenres(new ArrayList<>(genres.getOrDefault(film.getId(), List.of())));
+    }
 
+    @Override
+    public void setFilmGenre(@NotNull List<Film> films) {
+        films.forEach(this::setFilmGenre);
     }
 
     @Override
-    public void addFilmGenre(Film film) {
+    public void addFilmGenre(@NotNull Film film) {
+        Map<Integer, FilmGenre> sorted = new TreeMap<>();
+        for (FilmGenre genre : film.getGenres()) {
+            sorted.putIfAbsent(genre.getId(), genre);
+        }
+        genres.put(film.getId(), List.copyOf(sorted.values()));
+        Film stored = films.get(film.getId());
+        if (stored != null) {
+            popularity.setKeys(film.getId(), new FilmPopularityIndex.Keys(stored.getMpa().getId(),
+                    stored.getReleaseDate().getYear(), sorted.keySet()));
+        }
+    }
+
+    // Как и внешние ключи в базе, лайк требует существующих фильма и пользователя
+    private boolean insertLike(Long filmId, Long userId) {
+        if (!films.containsKey(filmId) || !userStorage.contains(userId)) {
+            throw new DataIntegrityViolationException("Лайк ссылается на несуществующий фильм " + filmId
+                    + " или пользователя " + userId);
+        }
+        boolean[] inserted = new boolean[1];
+        likes.compute(filmId, (id, users) -> {
+            long[] current = users == null ? SortedArrays.EMPTY : users;
+            long[] updated = SortedArrays.insert(current, userId);
+            inserted[0] = updated != current;
+            if (inserted[0]) {
+                likedAt.computeIfAbsent(filmId, key -> new ConcurrentHashMap<>()).put(userId, Instant.now());
+            }
+            return updated;
+        });
+        if (inserted[0]) {
+            popularity.addLikes(filmId, 1);
+            likeListeners.forEach(listener -> listener.likeAdded(filmId, userId));
+        }
+        return inserted[0];
+    }
+
+    private Film copy(@NotNull Film film) {
+        return new Film(film.getId(),
+                film.getName(),
+                film.getDescription(),
+                film.getReleaseDate(),
+                film.getDuration(),
+                film.getMpa());
+    }
 
+    // Название рейтинга берется из справочника, как при чтении фильма из базы
+    private Film stored(@NotNull Film film) {
+        Film stored = copy(film);
+        try {
+            stored.setMpa(filmRating.getRatingById(film.getMpa().getId()));
+        } catch (EmptyResultDataAccessException e) {
+            throw new DataIntegrityViolationException("Рейтинг с id " + film.getMpa().getId() + " не найден");
+        }
+        return stored;
     }
 }
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+
+@Slf4j
+@Component
+@Profile("!in-memory & !reactive")
+public class LikeCountReconciler {
+
+    private final FilmDbStorage filmStorage;
+    private final LikeMatrix likeMatrix;
+    private final FilmTrending trending;
+    private final EntityVersions versions;
+
+    public LikeCountReconciler(FilmDbStorage filmStorage, LikeMatrix likeMatrix, FilmTrending trending,
+                               EntityVersions versions) {
+        this.filmStorage = filmStorage;
+        this.likeMatrix = likeMatrix;
+        this.trending = trending;
+        this.versions = versions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${filmorate.likes.reconcile-cron:0 0 4 * * *}")
+    public void reconcile() {
+        int fixed = filmStorage.reconcileLikeCounts();
+        if (fixed > 0) {
+            versions.bump(EntityVersions.Entity.LIKES);
+            log.warn("Пересчитаны счетчики лайков у {} фильмов", fixed);
+        } else {
+            log.debug("Счетчики лайков совпадают с таблицей film_likes");
+        }
+        // Матрица рекомендаций и счетчики трендов тоже перестраиваются по таблице: так исправляются
+        // изменения, которые не дошли до них из-за отката пачки отложенной записи
+        likeMatrix.rebuild(filmStorage::streamLikes);
+        trending.rebuild(filmStorage::streamLikes);
+    }
+}
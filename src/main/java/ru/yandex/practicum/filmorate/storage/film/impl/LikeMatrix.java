@@ -0,0 +1,357 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.AddedLikeListener;
+import ru.yandex.practicum.filmorate.storage.film.LikeListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Разреженная матрица лайков пользователь x фильм: строка пользователя - отсортированные id его фильмов,
+// столбец фильма - отсортированные id лайкнувших. Id в базе - плотные INTEGER, поэтому они же и индексы
+@Slf4j
+@Component
+@Profile("!reactive")
+public class LikeMatrix implements LikeListener {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int neighbours;
+    private final int maxFilmLikes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[][] filmsByUser = new int[0][];
+    private int[][] usersByFilm = new int[0][];
+    // Пока матрица перестраивается, изменения копятся здесь и применяются поверх загруженного снимка
+    private List<long[]> changesDuringRebuild;
+
+    public LikeMatrix(@Value("${filmorate.recommendations.neighbours:50}") int neighbours,
+                      @Value("${filmorate.recommendations.max-film-likes:10000}") int maxFilmLikes) {
+        this.neighbours = neighbours;
+        this.maxFilmLikes = maxFilmLikes;
+    }
+
+    public synchronized void rebuild(Consumer<AddedLikeListener> loader) {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Builder builder = new Builder();
+        try {
+            loader.accept(builder);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        int[][] users = builder.filmsByUser();
+        int[][] films = builder.usersByFilm();
+        lock.writeLock().lock();
+        try {
+            filmsByUser = users;
+            usersByFilm = films;
+            for (long[] change : changesDuringRebuild) {
+                apply(change[0], change[1], change[2] > 0);
+            }
+            log.debug("Матрица лайков перестроена: {} лайков, изменений во время загрузки {}", builder.likes,
+                    changesDuringRebuild.size());
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void likeAdded(long filmId, long userId) {
+        change(filmId, userId, true);
+    }
+
+    @Override
+    public void likeRemoved(long filmId, long userId) {
+        change(filmId, userId, false);
+    }
+
+    // Соседи - пользователи с наибольшим числом общих лайков; фильм получает сумму пересечений соседей,
+    // которые его лайкнули. Уже лайкнутые пользователем фильмы не рекомендуются
+    public List<Long> recommend(long userId, int count) {
+        lock.readLock().lock();
+        try {
+            int[] liked = row(filmsByUser, userId);
+            if (liked.length == 0) {
+                return new ArrayList<>();
+            }
+            Counter overlap = new Counter(liked.length * 64);
+            for (int film : liked) {
+                int[] users = usersByFilm[film];
+                // У очень популярных фильмов берется равномерная выборка лайкнувших: такой лайк почти
+                // ничего не говорит о вкусе, а полный обход стоил бы миллисекунды на каждый запрос
+                int step = Math.max(1, (users.length + maxFilmLikes - 1) / maxFilmLikes);
+                for (int i = 0; i < users.length; i += step) {
+                    if (users[i] != userId) {
+                        overlap.add(users[i], 1);
+                    }
+                }
+            }
+            Counter scores = new Counter(neighbours * 16);
+            for (int other : overlap.top(neighbours)) {
+                int weight = overlap.get(other);
+                for (int film : filmsByUser[other]) {
+                    if (Arrays.binarySearch(liked, film) < 0) {
+                        scores.add(film, weight);
+                    }
+                }
+            }
+            List<Long> films = new ArrayList<>(count);
+            for (int film : scores.top(count)) {
+                films.add((long) film);
+            }
+            return films;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(long filmId, long userId, boolean liked) {
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(new long[]{filmId, userId, liked ? 1 : 0});
+            }
+            apply(filmId, userId, liked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(long filmId, long userId, boolean liked) {
+        int film = Math.toIntExact(filmId);
+        int user = Math.toIntExact(userId);
+        if (liked) {
+            filmsByUser = ensureCapacity(filmsByUser, user);
+            usersByFilm = ensureCapacity(usersByFilm, film);
+            filmsByUser[user] = insert(filmsByUser[user], film);
+            usersByFilm[film] = insert(usersByFilm[film], user);
+        } else if (user < filmsByUser.length && film < usersByFilm.length) {
+            filmsByUser[user] = remove(filmsByUser[user], film);
+            usersByFilm[film] = remove(usersByFilm[film], user);
+        }
+    }
+
+    private static int[] row(int[][] rows, long id) {
+        return id >= 0 && id < rows.length ? rows[(int) id] : EMPTY;
+    }
+
+    private static int[][] ensureCapacity(int[][] rows, int index) {
+        if (index < rows.length) {
+            return rows;
+        }
+        int length = rows.length;
+        rows = Arrays.copyOf(rows, Math.max(index + 1, length * 2));
+        Arrays.fill(rows, length, rows.length, EMPTY);
+        return rows;
+    }
+
+    private static int[] insert(int[] array, int value) {
+        int index = Arrays.binarySearch(array, value);
+        if (index >= 0) {
+            return array;
+        }
+        index = -index - 1;
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static int[] remove(int[] array, int value) {
+        int index = Arrays.binarySearch(array, value);
+        if (index < 0) {
+            return array;
+        }
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    // Загрузка дописывает лайки в конец строк, а сортирует их один раз в конце
+    private static final class Builder implements AddedLikeListener {
+
+        private int[][] filmsByUser = new int[0][];
+        private int[][] usersByFilm = new int[0][];
+        private int[] userSizes = new int[0];
+        private int[] filmSizes = new int[0];
+        private long likes;
+
+        @Override
+        public void likeAdded(long filmId, long userId) {
+            int film = Math.toIntExact(filmId);
+            int user = Math.toIntExact(userId);
+            if (user >= filmsByUser.length) {
+                filmsByUser = ensureCapacity(filmsByUser, user);
+                userSizes = Arrays.copyOf(userSizes, filmsByUser.length);
+            }
+            if (film >= usersByFilm.length) {
+                usersByFilm = ensureCapacity(usersByFilm, film);
+                filmSizes = Arrays.copyOf(filmSizes, usersByFilm.length);
+            }
+            filmsByUser[user] = append(filmsByUser[user], userSizes[user]++, film);
+            usersByFilm[film] = append(usersByFilm[film], filmSizes[film]++, user);
+            likes++;
+        }
+
+        private static int[] append(int[] array, int size, int value) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, Math.max(4, size * 2));
+            }
+            array[size] = value;
+            return array;
+        }
+
+        private int[][] filmsByUser() {
+            return sorted(filmsByUser, userSizes);
+        }
+
+        private int[][] usersByFilm() {
+            return sorted(usersByFilm, filmSizes);
+        }
+
+        private static int[][] sorted(int[][] rows, int[] sizes) {
+            for (int i = 0; i < rows.length; i++) {
+                if (sizes[i] == 0) {
+                    rows[i] = EMPTY;
+                    continue;
+                }
+                int[] row = Arrays.copyOf(rows[i], sizes[i]);
+                Arrays.sort(row);
+                rows[i] = row;
+            }
+            return rows;
+        }
+    }
+
+    // Счетчик int -> int с открытой адресацией: id начинаются с 1, поэтому 0 обозначает пустую ячейку
+    private static final class Counter {
+
+        private int[] keys;
+        private int[] values;
+        private int size;
+
+        private Counter(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected) - 1) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+        }
+
+        private void add(int key, int delta) {
+            int slot = slot(keys, key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slot(keys, key);
+                }
+            }
+            values[slot] += delta;
+        }
+
+        private int get(int key) {
+            int slot = slot(keys, key);
+            return keys[slot] == 0 ? 0 : values[slot];
+        }
+
+        // Ключи с наибольшими значениями, при равенстве - с меньшим id. Куча ограничена limit элементами
+        private int[] top(int limit) {
+            long[] heap = new long[Math.min(limit, size)];
+            int heapSize = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == 0) {
+                    continue;
+                }
+                long rank = (long) values[i] << 32 | (Integer.MAX_VALUE - keys[i]);
+                if (heapSize < heap.length) {
+                    heap[heapSize] = rank;
+                    siftUp(heap, heapSize++);
+                } else if (heap.length > 0 && rank > heap[0]) {
+                    heap[0] = rank;
+                    siftDown(heap, heapSize);
+                }
+            }
+            Arrays.sort(heap, 0, heapSize);
+            int[] result = new int[heapSize];
+            for (int i = 0; i < heapSize; i++) {
+                result[i] = Integer.MAX_VALUE - (int) heap[heapSize - 1 - i];
+            }
+            return result;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static void siftUp(long[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent] <= heap[index]) {
+                    return;
+                }
+                long swap = heap[parent];
+                heap[parent] = heap[index];
+                heap[index] = swap;
+                index = parent;
+            }
+        }
+
+        private static void siftDown(long[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    return;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[index] <= heap[child]) {
+                    return;
+                }
+                long swap = heap[child];
+                heap[child] = heap[index];
+                heap[index] = swap;
+                index = child;
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+@Slf4j
+@Component
+@Profile("!in-memory & !reactive")
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBehind {
+
+    private static final int STRIPES = 64;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    private final int batchSize;
+    private final int capacity;
+    private final Duration flushInterval;
+    // В очереди лежит только желаемое состояние лайка, отличное от сохраненного в базе
+    private final List<Map<Key, Boolean>> pending = new ArrayList<>(STRIPES);
+    private final List<ReentrantLock> locks = new ArrayList<>(STRIPES);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "likes-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Map<Key, Boolean> flushing = Collections.emptyMap();
+    // После неудачной записи сброс по расписанию откладывается, задержка растет вдвое с каждой ошибкой
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long retryAt;
+    // После начала остановки сброс по расписанию невозможен, и лайки записываются сразу
+    private volatile boolean closed;
+    private BiConsumer<List<FilmLike>, List<FilmLike>> writer;
+
+    public LikeWriteBehind(@Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval) {
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.flushInterval = flushInterval;
+        for (int i = 0; i < STRIPES; i++) {
+            pending.add(new HashMap<>());
+            locks.add(new ReentrantLock());
+        }
+    }
+
+    void start(BiConsumer<List<FilmLike>, List<FilmLike>> writer) {
+        this.writer = writer;
+        long interval = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Возвращает true, если лайк поменял состояние. stored читает состояние из базы
+    // и вызывается только для ключей, которых нет ни в очереди, ни в записываемой пачке
+    boolean set(long filmId, long userId, boolean liked, BooleanSupplier stored) {
+        if (size.get() >= capacity) {
+            // Очередь заполнена: пишущий поток сам сбрасывает ее в базу. Пока после ошибки записи действует
+            // задержка повтора, запрос отклоняется, а не идет в недоступную базу
+            if (System.currentTimeMillis() < retryAt) {
+                throw new ServiceUnavailableException("Очередь лайков заполнена, запись в базу отложена после ошибки");
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                throw new ServiceUnavailableException("Очередь лайков заполнена и не записана в базу", e);
+            }
+        }
+        Key key = new Key(filmId, userId);
+        int stripe = key.hashCode() & (STRIPES - 1);
+        Map<Key, Boolean> likes = pending.get(stripe);
+        ReentrantLock lock = locks.get(stripe);
+        lock.lock();
+        try {
+            Boolean queued = likes.get(key);
+            boolean current = queued != null ? queued : stored(key, stored);
+            if (current == liked) {
+                return false;
+            }
+            if (queued != null) {
+                // Добавление и удаление одного лайка взаимно погасились
+                likes.remove(key);
+                size.decrementAndGet();
+            } else {
+                likes.put(key, liked);
+                size.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (closed) {
+            flush();
+        } else if (size.get() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Остановка началась между проверкой и постановкой задачи
+                flushScheduled.set(false);
+                flush();
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            if (size.get() == 0) {
+                return;
+            }
+            // Пачка видна читателям до коммита, иначе они прочитали бы из базы старое состояние
+            Map<Key, Boolean> batch = new ConcurrentHashMap<>();
+            flushing = batch;
+            for (int i = 0; i < STRIPES; i++) {
+                locks.get(i).lock();
+                try {
+                    batch.putAll(pending.get(i));
+                    size.addAndGet(-pending.get(i).size());
+                    pending.get(i).clear();
+                } finally {
+                    locks.get(i).unlock();
+                }
+            }
+            List<FilmLike> added = new ArrayList<>();
+            List<FilmLike> removed = new ArrayList<>();
+            batch.forEach((key, liked) -> (liked ? added : removed).add(new FilmLike(key.filmId, key.userId)));
+            try {
+                writer.accept(added, removed);
+                failures.set(0);
+                retryAt = 0;
+                log.debug("Записано лайков: добавлено {}, удалено {}", added.size(), removed.size());
+            } catch (RuntimeException e) {
+                restore(batch);
+                long delay = Math.min(flushInterval.toMillis() << Math.min(failures.incrementAndGet(), 20),
+                        MAX_RETRY_DELAY_MS);
+                retryAt = System.currentTimeMillis() + delay;
+                log.error("Не удалось записать пачку лайков: добавлено {}, удалено {}, повтор через {} мс",
+                        added.size(), removed.size(), delay, e);
+                throw e;
+            } finally {
+                flushing = Collections.emptyMap();
+            }
+        }
+    }
+
+    // Незаписанная пачка возвращается в очередь. Ключ, который успели изменить после сброса, уже хранит
+    // более новое желаемое состояние и не перезаписывается. Пачка остается видна читателям, пока не вернется
+    private void restore(Map<Key, Boolean> batch) {
+        for (Map.Entry<Key, Boolean> entry : batch.entrySet()) {
+            int stripe = entry.getKey().hashCode() & (STRIPES - 1);
+            ReentrantLock lock = locks.get(stripe);
+            lock.lock();
+            try {
+                if (pending.get(stripe).putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    size.incrementAndGet();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    void shutdown() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushInterval.toMillis() + 5000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private boolean stored(Key key, BooleanSupplier stored) {
+        Boolean flushed = flushing.get(key);
+        return flushed != null ? flushed : stored.getAsBoolean();
+    }
+
+    private void flushQuietly() {
+        if (System.currentTimeMillis() < retryAt) {
+            flushScheduled.set(false);
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Ошибка уже записана в лог, пачка вернулась в очередь и будет записана повторно
+        }
+    }
+
+    private static final class Key {
+
+        private final long filmId;
+        private final long userId;
+
+        private Key(long filmId, long userId) {
+            this.filmId = filmId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return filmId == key.filmId && userId == key.userId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filmId, userId);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.storage.film.ReactiveFilmGenreDao;
+
+@Component
+@Profile("reactive")
+public class R2dbcFilmGenreDao implements ReactiveFilmGenreDao {
+
+    private static final String SELECT_BY_ID = "SELECT * FROM genres WHERE genre_id = ?";
+    private static final String SELECT_ALL = "SELECT * FROM genres ORDER BY genre_id";
+    private final DatabaseClient client;
+
+    public R2dbcFilmGenreDao(DatabaseClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Mono<FilmGenre> getGenreById(Integer id) {
+        return client.sql(SELECT_BY_ID)
+                .bind(0, id)
+                .map(row -> new FilmGenre(row.get("genre_id", Integer.class), row.get("name", String.class)))
+                .one();
+    }
+
+    @Override
+    public Flux<FilmGenre> getGenres() {
+        return client.sql(SELECT_ALL)
+                .map(row -> new FilmGenre(row.get("genre_id", Integer.class), row.get("name", String.class)))
+                .all();
+    }
+}
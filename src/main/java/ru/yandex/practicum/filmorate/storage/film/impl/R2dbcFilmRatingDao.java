@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.storage.film.ReactiveFilmRatingDao;
+
+@Component
+@Profile("reactive")
+public class R2dbcFilmRatingDao implements ReactiveFilmRatingDao {
+
+    private static final String SELECT_BY_ID = "SELECT * FROM rating WHERE rating_id = ?";
+    private static final String SELECT_ALL = "SELECT * FROM rating ORDER BY rating_id";
+    private final DatabaseClient client;
+
+    public R2dbcFilmRatingDao(DatabaseClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Mono<FilmRating> getRatingById(Integer id) {
+        return client.sql(SELECT_BY_ID)
+                .bind(0, id)
+                .map(row -> new FilmRating(row.get("rating_id", Integer.class), row.get("name", String.class)))
+                .one();
+    }
+
+    @Override
+    public Flux<FilmRating> getRatings() {
+        return client.sql(SELECT_ALL)
+                .map(row -> new FilmRating(row.get("rating_id", Integer.class), row.get("name", String.class)))
+                .all();
+    }
+}
@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import io.r2dbc.spi.Row;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.storage.film.ReactiveFilmStorage;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Component
+@Profile("reactive")
+public class R2dbcFilmStorage implements ReactiveFilmStorage {
+
+    private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration, " +
+            "rating_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_FILM = "UPDATE films SET name = ?, description = ?, release_date = ?, " +
+            "duration = ?, rating_id = ? where film_id = ?";
+    // Жанры читаются тем же запросом, строки одного фильма идут подряд
+    private static final String SELECT_WITH_GENRES = "SELECT f.film_id, f.name, f.description, f.release_date, " +
+            "f.duration, f.rating_id, r.name AS r_name, g.genre_id, g.name AS g_name FROM %s AS f " +
+            "INNER JOIN rating AS r ON f.rating_id = r.rating_id LEFT JOIN film_genre AS fg ON f.film_id = fg.film_id " +
+            "LEFT JOIN genres AS g ON fg.genre_id = g.genre_id %s";
+    private static final String SELECT_ALL = String.format(SELECT_WITH_GENRES, "films",
+            "ORDER BY f.film_id, g.genre_id");
+    private static final String SELECT_PAGE = String.format(SELECT_WITH_GENRES,
+            "(SELECT * FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?)", "ORDER BY f.film_id, g.genre_id");
+    private static final String SELECT_BY_ID = String.format(SELECT_WITH_GENRES, "films",
+            "WHERE f.film_id = ? ORDER BY g.genre_id");
+    private static final String SELECT_POP = String.format(SELECT_WITH_GENRES,
+            "(SELECT * FROM films ORDER BY like_count DESC, film_id LIMIT ?)",
+            "ORDER BY f.like_count DESC, f.film_id, g.genre_id");
+    private static final String EXISTS = "SELECT EXISTS (SELECT 1 FROM films WHERE film_id = ?)";
+    private static final String INSERT_LIKE = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?) " +
+            "ON CONFLICT DO NOTHING";
+    private static final String DELETE_LIKE = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+    private static final String INCREMENT_LIKES = "UPDATE films SET like_count = like_count + 1 WHERE film_id = ?";
+    private static final String DECREMENT_LIKES = "UPDATE films SET like_count = like_count - 1 WHERE film_id = ?";
+    private static final String SELECT_GENRE_IDS = "SELECT genre_id FROM film_genre WHERE film_id = ?";
+    private static final String DELETE_GENRE = "DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?";
+    private static final String INSERT_GENRE = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+    private final DatabaseClient client;
+    private final TransactionalOperator transaction;
+
+    public R2dbcFilmStorage(DatabaseClient client, TransactionalOperator transaction) {
+        this.client = client;
+        this.transaction = transaction;
+    }
+
+    @Override
+    public Mono<Film> add(Film film) {
+        return bindFilm(client.sql(INSERT_FILM), film)
+                .filter(statement -> statement.returnGeneratedValues("film_id"))
+                .map(row -> row.get(0, Integer.class).longValue())
+                .one()
+                .flatMap(id -> {
+                    film.setId(id);
+                    return setGenres(film);
+                })
+                .as(transaction::transactional);
+    }
+
+    @Override
+    public Mono<Film> update(Film film) {
+        return bindFilm(client.sql(UPDATE_FILM), film)
+                .bind(5, film.getId())
+                .fetch()
+                .rowsUpdated()
+                .then(setGenres(film))
+                .as(transaction::transactional);
+    }
+
+    @Override
+    public Flux<Film> get() {
+        return films(client.sql(SELECT_ALL));
+    }
+
+    @Override
+    public Flux<Film> get(Long after, int limit) {
+        return films(client.sql(SELECT_PAGE).bind(0, after).bind(1, limit));
+    }
+
+    @Override
+    public Mono<Film> getFilmById(Long id) {
+        return films(client.sql(SELECT_BY_ID).bind(0, id)).next();
+    }
+
+    @Override
+    public Mono<Boolean> contains(Long id) {
+        return client.sql(EXISTS)
+                .bind(0, id)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Void> addLike(Long filmId, Long userId) {
+        return client.sql(INSERT_LIKE)
+                .bind(0, filmId)
+                .bind(1, userId)
+                .fetch()
+                .rowsUpdated()
+                .filter(inserted -> inserted > 0)
+                .flatMap(inserted -> client.sql(INCREMENT_LIKES).bind(0, filmId).fetch().rowsUpdated())
+                .then()
+                .as(transaction::transactional);
+    }
+
+    @Override
+    public Mono<Boolean> removeLike(Long filmId, Long userId) {
+        return client.sql(DELETE_LIKE)
+                .bind(0, filmId)
+                .bind(1, userId)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(deleted -> deleted > 0
+                        ? client.sql(DECREMENT_LIKES).bind(0, filmId).fetch().rowsUpdated().thenReturn(true)
+                        : Mono.just(false))
+                .as(transaction::transactional);
+    }
+
+    @Override
+    public Flux<Film> getPopular(int count) {
+        return films(client.sql(SELECT_POP).bind(0, count));
+    }
+
+    // Как и FilmDbStorage.addFilmGenre, меняет только разницу между сохраненными и переданными жанрами
+    private Mono<Film> setGenres(@NotNull Film film) {
+        return client.sql(SELECT_GENRE_IDS)
+                .bind(0, film.getId())
+                .map(row -> row.get(0, Integer.class))
+                .all()
+                .collect(HashSet<Integer>::new, Set::add)
+                .flatMap(stored -> {
+                    Set<Integer> requested = new LinkedHashSet<>();
+                    film.getGenres().forEach(genre -> requested.add(genre.getId()));
+                    Flux<Integer> deletes = Flux.fromIterable(stored)
+                            .filter(genreId -> !requested.contains(genreId))
+                            .concatMap(genreId -> client.sql(DELETE_GENRE)
+                                    .bind(0, film.getId())
+                                    .bind(1, genreId)
+                                    .fetch()
+                                    .rowsUpdated());
+                    Flux<Integer> inserts = Flux.fromIterable(requested)
+                            .filter(genreId -> !stored.contains(genreId))
+                            .concatMap(genreId -> client.sql(INSERT_GENRE)
+                                    .bind(0, film.getId())
+                                    .bind(1, genreId)
+                                    .fetch()
+                                    .rowsUpdated());
+                    return deletes.thenMany(inserts).then(Mono.just(film));
+                });
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindFilm(DatabaseClient.GenericExecuteSpec spec, @NotNull Film film) {
+        spec = spec.bind(0, film.getName());
+        spec = film.getDescription() == null ? spec.bindNull(1, String.class) : spec.bind(1, film.getDescription());
+        return spec.bind(2, film.getReleaseDate())
+                .bind(3, film.getDuration())
+                .bind(4, film.getMpa().getId());
+    }
+
+    private Flux<Film> films(DatabaseClient.GenericExecuteSpec spec) {
+        return spec.map(FilmRow::new)
+                .all()
+                .bufferUntilChanged(row -> row.film.getId())
+                .map(this::makeFilm);
+    }
+
+    private Film makeFilm(@NotNull List<FilmRow> rows) {
+        Film film = rows.get(0).film;
+        for (FilmRow row : rows) {
+            if (row.genre != null) {
+                film.getGenres().add(row.genre);
+            }
+        }
+        return film;
+    }
+
+    private static final class FilmRow {
+
+        private final Film film;
+        private final FilmGenre genre;
+
+        private FilmRow(@NotNull Row row) {
+            this.film = new Film(row.get("film_id", Integer.class).longValue(),
+                    row.get("name", String.class),
+                    row.get("description", String.class),
+                    row.get("release_date", LocalDate.class),
+                    row.get("duration", Integer.class),
+                    new FilmRating(row.get("rating_id", Integer.class), row.get("r_name", String.class)));
+            Integer genreId = row.get("genre_id", Integer.class);
+            this.genre = genreId == null ? null : new FilmGenre(genreId, row.get("g_name", String.class));
+        }
+    }
+}
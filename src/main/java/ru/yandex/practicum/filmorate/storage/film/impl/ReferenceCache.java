@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage.film.impl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Справочник целиком в памяти. Таблица считается полной: неизвестный id не идет в базу, а отвечает
+// тем же исключением, что и запрос по id. Перечитывается справочник при старте и явным вызовом refresh
+@Slf4j
+public abstract class ReferenceCache<T> {
+
+    private final String name;
+    private final Supplier<List<T>> loader;
+    private final Function<T, Integer> idFunction;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Map<Integer, T> values;
+    private volatile List<T> all;
+
+    protected ReferenceCache(String name, Supplier<List<T>> loader, Function<T, Integer> idFunction,
+                             MeterRegistry registry) {
+        this.name = name;
+        this.loader = loader;
+        this.idFunction = idFunction;
+        FunctionCounter.builder("cache.gets", this, ReferenceCache::getHits)
+                .tag("cache", name)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, ReferenceCache::getMisses)
+                .tag("cache", name)
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public synchronized void refresh() {
+        Map<Integer, T> loaded = new LinkedHashMap<>();
+        for (T value : loader.get()) {
+            loaded.put(idFunction.apply(value), value);
+        }
+        all = List.copyOf(loaded.values());
+        values = Collections.unmodifiableMap(loaded);
+        log.debug("Кэш справочника {} обновлен: {} записей, попаданий {}, промахов {}",
+                name, loaded.size(), getHits(), getMisses());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    protected T get(Integer id) {
+        T value = load().get(id);
+        if (value == null) {
+            misses.increment();
+            throw new EmptyResultDataAccessException("В справочнике " + name + " нет записи с id " + id, 1);
+        }
+        hits.increment();
+        return value;
+    }
+
+    protected List<T> getAll() {
+        load();
+        hits.increment();
+        return all;
+    }
+
+    private Map<Integer, T> load() {
+        Map<Integer, T> current = values;
+        if (current == null) {
+            refresh();
+            current = values;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReadYourWrites {
+
+    private final long maxLagNanos;
+    private final AtomicLong lastWrite;
+    private final ThreadLocal<Boolean> wrote = new ThreadLocal<>();
+
+    public ReadYourWrites(Duration maxLag) {
+        this.maxLagNanos = maxLag.toNanos();
+        this.lastWrite = new AtomicLong(System.nanoTime() - maxLagNanos);
+    }
+
+    public void markWrite() {
+        wrote.set(Boolean.TRUE);
+        lastWrite.set(System.nanoTime());
+    }
+
+    // Чтение идет в основную базу, если текущий запрос уже писал или реплика могла еще не догнать запись
+    public boolean usePrimary() {
+        return wrote.get() != null || System.nanoTime() - lastWrite.get() < maxLagNanos;
+    }
+
+    public void clear() {
+        wrote.remove();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadYourWritesFilter(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            readYourWrites.clear();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty("filmorate.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${filmorate.datasource.replica.url}") String url,
+                                              @Value("${filmorate.datasource.replica.username:${spring.datasource.username:}}")
+                                              String username,
+                                              @Value("${filmorate.datasource.replica.password:${spring.datasource.password:}}")
+                                              String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${filmorate.datasource.replica.max-lag:1s}") Duration maxLag) {
+        return new ReadYourWrites(maxLag);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReadYourWrites readYourWrites) {
+        return new ReadYourWritesFilter(readYourWrites);
+    }
+
+    // Ленивый прокси берет соединение при первом запросе, когда флаг readOnly транзакции уже выставлен
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReadYourWrites readYourWrites) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, readYourWrites));
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // На реплику уходят только транзакции readOnly, все остальное считается записью
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return readYourWrites.usePrimary() ? Target.PRIMARY : Target.REPLICA;
+        }
+        readYourWrites.markWrite();
+        return Target.PRIMARY;
+    }
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+public interface FriendshipListener {
+
+    void friendsChanged(long userId);
+
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.User;
+
+public interface ReactiveUserStorage {
+
+    Mono<User> add(User user);
+
+    Mono<User> update(User user);
+
+    Flux<User> get();
+
+    Flux<User> get(Long after, int limit);
+
+    Mono<User> getUserById(Long id);
+
+    Mono<Boolean> contains(Long id);
+
+    Mono<Void> addFriend(Long userId, Long friendId);
+
+    Mono<Boolean> removeFriend(Long userId, Long friendId);
+
+    Flux<User> getFriends(Long id);
+
+    Flux<User> getCommonFriends(Long firstId, Long secondId);
+}
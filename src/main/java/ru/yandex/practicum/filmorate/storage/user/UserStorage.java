@@ -1,8 +1,13 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
@@ -10,16 +15,32 @@ public interface UserStorage {
 
     User update(User user);
 
+    List<User> addAll(List<User> users);
+
     List<User> get();
 
+    List<User> get(Long after, int limit);
+
+    void stream(Consumer<User> action);
+
     User getUserById(Long id);
 
+    List<User> getByIds(Collection<Long> ids);
+
+    boolean contains(Long id);
+
+    Set<Long> findExisting(Collection<Long> ids);
+
     void addFriend(Long userId, Long friend_id);
 
-    void removeFriend(Long userId, Long friend_id);
+    boolean removeFriend(Long userId, Long friend_id);
+
+    int[] addFriends(List<Friendship> friendships);
 
     List<User> getFriends(Long id);
 
+    Map<Long, long[]> getFriendIds(Collection<Long> ids);
+
     List<User> getCommonFriends(Long firstId, Long secondId);
 
 }
@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.storage.user.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.SortedArrays;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+// Друзья друзей пользователя, упорядоченные по числу общих друзей. Результат кэшируется и зависит от
+// списков друзей самого пользователя и каждого из его друзей, поэтому для каждого друга запоминается,
+// чьи рекомендации через него посчитаны, и изменение его списка сбрасывает их все. Когда результат
+// покидает кэш по любой причине, его зависимости снимаются
+@Slf4j
+@Component
+@Profile("!reactive")
+public class FriendSuggestions implements FriendshipListener {
+
+    // Столько же, сколько максимальный размер страницы в сервисах: кэш хранит ответ на любой допустимый count
+    public static final int MAX_SUGGESTIONS = 1000;
+
+    private final int maxDegree;
+    private final Cache<Long, Suggestions> suggestions;
+    // Для каждого друга - пользователи, чьи рекомендации через него посчитаны, с меткой загрузки
+    private final ConcurrentMap<Long, ConcurrentMap<Long, Object>> dependents = new ConcurrentHashMap<>();
+
+    public FriendSuggestions(MeterRegistry registry,
+                             @Value("${filmorate.friends.suggestions.max-degree:200}") int maxDegree,
+                             @Value("${filmorate.friends.suggestions.cache-size:100000}") long cacheSize,
+                             @Value("${filmorate.friends.suggestions.cache-ttl:10m}") Duration cacheTtl) {
+        this.maxDegree = maxDegree;
+        this.suggestions = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .removalListener((Long userId, Suggestions value, RemovalCause cause) -> forget(userId, value))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, suggestions, "friendSuggestions");
+    }
+
+    // friendIds возвращает отсортированные id друзей для каждого переданного пользователя
+    public List<Long> suggest(long userId, int count, Function<Collection<Long>, Map<Long, long[]>> friendIds) {
+        long[] ids = suggestions.get(userId, id -> load(id, friendIds)).ids;
+        List<Long> result = new ArrayList<>(Math.min(count, ids.length));
+        for (int i = 0; i < ids.length && i < count; i++) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    // Вызывается после записи в базу: загрузка, начатая до записи, завершится раньше сброса своего ключа
+    @Override
+    public void friendsChanged(long userId) {
+        suggestions.invalidate(userId);
+        Map<Long, Object> users = dependents.remove(userId);
+        if (users != null) {
+            suggestions.invalidateAll(users.keySet());
+        }
+    }
+
+    public void invalidateAll() {
+        suggestions.invalidateAll();
+        dependents.clear();
+    }
+
+    private Suggestions load(long userId, Function<Collection<Long>, Map<Long, long[]>> friendIds) {
+        long[] friends = friendIds.apply(List.of(userId)).getOrDefault(userId, SortedArrays.EMPTY);
+        long[] visited = sample(friends);
+        List<Long> keys = new ArrayList<>(visited.length);
+        // Зависимость регистрируется до чтения списка друга, чтобы его изменение после чтения сбросило результат.
+        // Метка не дает слушателю удаления прежнего результата снять зависимости этой загрузки
+        Object token = new Object();
+        for (long friend : visited) {
+            dependents.compute(friend, (id, users) -> {
+                ConcurrentMap<Long, Object> updated = users == null ? new ConcurrentHashMap<>() : users;
+                updated.put(userId, token);
+                return updated;
+            });
+            keys.add(friend);
+        }
+        Map<Long, long[]> friendsOfFriends = friendIds.apply(keys);
+
+        Map<Long, Integer> mutual = new HashMap<>();
+        for (long friend : visited) {
+            for (long candidate : sample(friendsOfFriends.getOrDefault(friend, SortedArrays.EMPTY))) {
+                if (candidate != userId && !SortedArrays.contains(friends, candidate)) {
+                    mutual.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        long[] ids = mutual.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_SUGGESTIONS)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+        log.debug("Посчитаны друзья друзей пользователя с id {}: друзей {}, просмотрено {}, кандидатов {}",
+                userId, friends.length, visited.length, mutual.size());
+        return new Suggestions(ids, visited, token);
+    }
+
+    // У пользователей с очень большим числом друзей берется равномерная выборка: обход остается ограниченным
+    // maxDegree x maxDegree, а число общих друзей для них становится оценкой
+    private long[] sample(long[] friends) {
+        if (friends.length <= maxDegree) {
+            return friends;
+        }
+        long[] sample = new long[maxDegree];
+        for (int i = 0; i < maxDegree; i++) {
+            sample[i] = friends[(int) ((long) i * friends.length / maxDegree)];
+        }
+        return sample;
+    }
+
+    private void forget(Long userId, Suggestions value) {
+        if (userId == null || value == null) {
+            return;
+        }
+        for (long friend : value.visited) {
+            dependents.computeIfPresent(friend, (id, users) -> {
+                users.remove(userId, value.token);
+                return users.isEmpty() ? null : users;
+            });
+        }
+    }
+
+    private static final class Suggestions {
+
+        private final long[] ids;
+        private final long[] visited;
+        private final Object token;
+
+        private Suggestions(long[] ids, long[] visited, Object token) {
+            this.ids = ids;
+            this.visited = visited;
+            this.token = token;
+        }
+    }
+}
@@ -1,58 +1,196 @@
 package ru.yandex.practicum.filmorate.storage.user.impl;
 
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.SortedArrays;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipListener;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component
+@Profile("in-memory")
 public class InMemoryUserStorage implements UserStorage {
 
-    private final Map<Long, User> users = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    // Друзья пользователя — отсортированный массив id, который заменяется целиком под блокировкой
+    // своей ячейки ConcurrentHashMap, поэтому читатели получают согласованный снимок без блокировок
+    private final ConcurrentMap<Long, long[]> friends = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final List<FriendshipListener> friendshipListeners;
+
+    public InMemoryUserStorage(List<FriendshipListener> friendshipListeners) {
+        this.friendshipListeners = friendshipListeners;
+    }
 
     @Override
     public User add(User user) {
-        users.put(user.getId(), user);
+        user.setId(ids.incrementAndGet());
+        users.put(user.getId(), copy(user));
         return user;
     }
 
     @Override
     public User update(User user) {
-        users.put(user.getId(), user);
+        users.replace(user.getId(), copy(user));
         return user;
     }
 
+    @Override
+    public List<User> addAll(List<User> users) {
+        users.forEach(this::add);
+        return users;
+    }
+
     @Override
     public List<User> get() {
-        return new ArrayList<>(users.values());
+        return users.values().stream()
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> get(Long after, int limit) {
+        return users.tailMap(after, false).values().stream()
+                .limit(limit)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void stream(Consumer<User> action) {
+        users.values().forEach(user -> action.accept(copy(user)));
     }
 
     @Override
     public User getUserById(Long id) {
-        return null;
+        User user = users.get(id);
+        if (user == null) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return copy(user);
     }
 
     @Override
-    public void addFriend(Long userId, Long friend_id) {
+    public List<User> getByIds(Collection<Long> ids) {
+        List<User> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(copy(user));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public Set<Long> findExisting(Collection<Long> ids) {
+        return ids.stream().filter(users::containsKey).collect(Collectors.toSet());
+    }
 
+    @Override
+    public void addFriend(Long userId, Long friend_id) {
+        insertFriend(userId, friend_id);
+        friendsChanged(userId);
     }
 
     @Override
-    public void removeFriend(Long userId, Long friend_id) {
+    public boolean removeFriend(Long userId, Long friend_id) {
+        boolean[] removed = new boolean[1];
+        friends.computeIfPresent(userId, (id, current) -> {
+            long[] updated = SortedArrays.remove(current, friend_id);
+            removed[0] = updated != current;
+            return updated;
+        });
+        friendsChanged(userId);
+        return removed[0];
+    }
 
+    @Override
+    public int[] addFriends(List<Friendship> friendships) {
+        int[] inserted = new int[friendships.size()];
+        for (int i = 0; i < inserted.length; i++) {
+            Friendship friendship = friendships.get(i);
+            inserted[i] = insertFriend(friendship.getUserId(), friendship.getFriendId()) ? 1 : 0;
+            friendsChanged(friendship.getUserId());
+        }
+        return inserted;
     }
 
     @Override
     public List<User> getFriends(Long id) {
-        return null;
+        return hydrate(friends.getOrDefault(id, SortedArrays.EMPTY));
+    }
+
+    @Override
+    public Map<Long, long[]> getFriendIds(Collection<Long> ids) {
+        Map<Long, long[]> result = new HashMap<>();
+        for (Long id : ids) {
+            result.put(id, friends.getOrDefault(id, SortedArrays.EMPTY));
+        }
+        return result;
     }
 
     @Override
     public List<User> getCommonFriends(Long firstId, Long secondId) {
-        return null;
+        return hydrate(SortedArrays.intersect(friends.getOrDefault(firstId, SortedArrays.EMPTY),
+                friends.getOrDefault(secondId, SortedArrays.EMPTY)));
+    }
+
+    // Как и внешние ключи в базе, дружба требует существования обоих пользователей
+    private boolean insertFriend(Long userId, Long friendId) {
+        if (!users.containsKey(userId) || !users.containsKey(friendId)) {
+            throw new DataIntegrityViolationException("Дружба ссылается на несуществующего пользователя "
+                    + userId + " или " + friendId);
+        }
+        boolean[] inserted = new boolean[1];
+        friends.compute(userId, (id, current) -> {
+            long[] array = current == null ? SortedArrays.EMPTY : current;
+            long[] updated = SortedArrays.insert(array, friendId);
+            inserted[0] = updated != array;
+            return updated;
+        });
+        return inserted[0];
+    }
+
+    private void friendsChanged(long userId) {
+        friendshipListeners.forEach(listener -> listener.friendsChanged(userId));
+    }
+
+    private List<User> hydrate(long[] ids) {
+        List<User> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(copy(user));
+            }
+        }
+        return result;
+    }
+
+    private User copy(@NotNull User user) {
+        return new User(user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
     }
 }
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.storage.user.impl;
+
+import io.r2dbc.spi.Row;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.ReactiveUserStorage;
+
+import java.time.LocalDate;
+
+@Component
+@Profile("reactive")
+public class R2dbcUserStorage implements ReactiveUserStorage {
+
+    private static final String INSERT_USER = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_USER = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? " +
+            "WHERE user_id = ?";
+    private static final String SELECT_ALL = "SELECT * FROM users ORDER BY user_id";
+    private static final String SELECT_PAGE = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+    private static final String SELECT_BY_ID = "SELECT * FROM users WHERE user_id = ?";
+    private static final String EXISTS = "SELECT EXISTS (SELECT 1 FROM users WHERE user_id = ?)";
+    private static final String INSERT_FRIEND = "INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?) " +
+            "ON CONFLICT DO NOTHING";
+    private static final String DELETE_FRIEND = "DELETE FROM user_friends WHERE user_id = ? AND friend_id = ?";
+    private static final String SELECT_FRIENDS = "SELECT u.user_id, u.email, u.login, u.name, u.birthday " +
+            "FROM users AS u RIGHT JOIN user_friends uf ON uf.friend_id = u.user_id WHERE uf.user_id = ?";
+    private static final String SELECT_COMMON_FRIENDS = "SELECT u.user_id, u.email, u.login, u.name, u.birthday " +
+            "FROM user_friends AS a INNER JOIN user_friends AS b ON a.friend_id = b.friend_id " +
+            "INNER JOIN users AS u ON u.user_id = a.friend_id WHERE a.user_id = ? AND b.user_id = ? " +
+            "ORDER BY u.user_id";
+    private final DatabaseClient client;
+
+    public R2dbcUserStorage(DatabaseClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Mono<User> add(User user) {
+        return bindUser(client.sql(INSERT_USER), user)
+                .filter(statement -> statement.returnGeneratedValues("user_id"))
+                .map(row -> row.get(0, Integer.class).longValue())
+                .one()
+                .map(id -> {
+                    user.setId(id);
+                    return user;
+                });
+    }
+
+    @Override
+    public Mono<User> update(User user) {
+        return bindUser(client.sql(UPDATE_USER), user)
+                .bind(4, user.getId())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(user);
+    }
+
+    @Override
+    public Flux<User> get() {
+        return client.sql(SELECT_ALL)
+                .map(this::makeUser)
+                .all();
+    }
+
+    @Override
+    public Flux<User> get(Long after, int limit) {
+        return client.sql(SELECT_PAGE)
+                .bind(0, after)
+                .bind(1, limit)
+                .map(this::makeUser)
+                .all();
+    }
+
+    @Override
+    public Mono<User> getUserById(Long id) {
+        return client.sql(SELECT_BY_ID)
+                .bind(0, id)
+                .map(this::makeUser)
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> contains(Long id) {
+        return client.sql(EXISTS)
+                .bind(0, id)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Void> addFriend(Long userId, Long friendId) {
+        return client.sql(INSERT_FRIEND)
+                .bind(0, userId)
+                .bind(1, friendId)
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+
+    @Override
+    public Mono<Boolean> removeFriend(Long userId, Long friendId) {
+        return client.sql(DELETE_FRIEND)
+                .bind(0, userId)
+                .bind(1, friendId)
+                .fetch()
+                .rowsUpdated()
+                .map(deleted -> deleted > 0);
+    }
+
+    @Override
+    public Flux<User> getFriends(Long id) {
+        return client.sql(SELECT_FRIENDS)
+                .bind(0, id)
+                .map(this::makeUser)
+                .all();
+    }
+
+    @Override
+    public Flux<User> getCommonFriends(Long firstId, Long secondId) {
+        return client.sql(SELECT_COMMON_FRIENDS)
+                .bind(0, firstId)
+                .bind(1, secondId)
+                .map(this::makeUser)
+                .all();
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindUser(DatabaseClient.GenericExecuteSpec spec, @NotNull User user) {
+        spec = spec.bind(0, user.getEmail())
+                .bind(1, user.getLogin())
+                .bind(2, user.getName());
+        return user.getBirthday() == null ? spec.bindNull(3, LocalDate.class) : spec.bind(3, user.getBirthday());
+    }
+
+    private User makeUser(@NotNull Row row) {
+        return new User(row.get("user_id", Integer.class).longValue(),
+                row.get("email", String.class),
+                row.get("login", String.class),
+                row.get("name", String.class),
+                row.get("birthday", LocalDate.class));
+    }
+}
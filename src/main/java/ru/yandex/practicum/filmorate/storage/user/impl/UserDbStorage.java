@@ -1,98 +1,327 @@
 package ru.yandex.practicum.filmorate.storage.user.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdChunks;
+import ru.yandex.practicum.filmorate.storage.JdbcStreams;
+import ru.yandex.practicum.filmorate.storage.SortedArrays;
+import ru.yandex.practicum.filmorate.storage.SqlMetrics;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipListener;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import javax.sql.DataSource;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Primary
 @Component("userDbStorage")
+@Profile("!in-memory & !reactive")
 public class UserDbStorage implements UserStorage {
 
     private static final String INSERT_USER = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
     private static final String UPDATE_USER = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? " +
             "WHERE user_id = ?";
     private static final String SELECT_ALL = "SELECT * FROM users ORDER BY user_id";
+    private static final String SELECT_PAGE = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
     private static final String SELECT_BY_ID = "SELECT * FROM users WHERE user_id = ?";
-    private static final String INSERT_FRIEND = "INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?)";
+    private static final String EXISTS = "SELECT EXISTS (SELECT 1 FROM users WHERE user_id = ?)";
+    private static final String SELECT_EXISTING = "SELECT user_id FROM users WHERE user_id = ANY(?)";
+    private static final String INSERT_FRIEND = "INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?) " +
+            "ON CONFLICT DO NOTHING";
     private static final String DELETE_FRIEND = "DELETE FROM user_friends WHERE user_id = ? AND friend_id = ?";
     private static final String SELECT_FRIENDS = "SELECT u.user_id, u.email, u.login, u.name, u.birthday " +
             "FROM users AS u RIGHT JOIN user_friends uf ON uf.friend_id = u.user_id WHERE uf.user_id = ?";
-    private static final String SELECT_COM_FRIENDS = "SELECT * FROM users WHERE user_id IN (SELECT friend_id FROM " +
-            "user_friends WHERE user_id = ? INTERSECT SELECT friend_id FROM user_friends WHERE user_id = ?) " +
-            "ORDER BY user_id";
+    private static final String SELECT_FRIEND_IDS = "SELECT friend_id FROM user_friends WHERE user_id = ? " +
+            "ORDER BY friend_id";
+    private static final String SELECT_BY_IDS = "SELECT * FROM users WHERE user_id = ANY(?) ORDER BY user_id";
+    private static final String SELECT_FRIEND_IDS_BY_USERS = "SELECT user_id, friend_id FROM user_friends " +
+            "WHERE user_id = ANY(?) ORDER BY user_id, friend_id";
     private final JdbcTemplate template;
+    // Списки друзей для кэша читаются только из основной базы: отставшая реплика оставила бы в кэше
+    // старый список на все время жизни записи
+    private final JdbcTemplate primaryTemplate;
+    private final SqlMetrics.Recorder sql;
+    private final Cache<Long, long[]> friendIds;
+    // Растет перед каждым сбросом кэша друзей: по нему пакетная загрузка узнает, что могла прочитать
+    // уже устаревшие списки
+    private final AtomicLong friendsChanges = new AtomicLong();
+    private final List<FriendshipListener> friendshipListeners;
 
-    public UserDbStorage(JdbcTemplate template) {
+    public UserDbStorage(JdbcTemplate template,
+                         @Qualifier("primaryDataSource") ObjectProvider<DataSource> primaryDataSource,
+                         SqlMetrics metrics,
+                         MeterRegistry registry,
+                         List<FriendshipListener> friendshipListeners,
+                         @Value("${filmorate.friends.cache-size:100000}") long cacheSize,
+                         @Value("${filmorate.friends.cache-ttl:10m}") Duration cacheTtl) {
         this.template = template;
+        DataSource primary = primaryDataSource.getIfAvailable();
+        this.primaryTemplate = primary == null ? template : new JdbcTemplate(primary);
+        this.sql = metrics.forDao("user");
+        this.friendshipListeners = friendshipListeners;
+        this.friendIds = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, friendIds, "friendIds");
     }
 
     @Override
     public User add(User user) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        template.update(con -> {
+        sql.update("INSERT_USER", () -> template.update(con -> {
             PreparedStatement ps = con.prepareStatement(INSERT_USER, new String[]{"user_id"});
             ps.setString(1, user.getEmail());
             ps.setString(2, user.getLogin());
             ps.setString(3, user.getName());
             ps.setDate(4, Date.valueOf(user.getBirthday()));
             return ps;
-        }, keyHolder);
+        }, keyHolder));
 
         user.setId(keyHolder.getKey().longValue());
+        friendsChanged(user.getId());
         return user;
     }
 
     @Override
     public User update(User user) {
-        template.update(UPDATE_USER,
+        sql.update("UPDATE_USER", () -> template.update(UPDATE_USER,
                 user.getEmail(),
                 user.getLogin(),
                 user.getName(),
                 user.getBirthday(),
-                user.getId());
+                user.getId()));
         return user;
     }
 
+    @Override
+    @Transactional
+    public List<User> addAll(List<User> users) {
+        sql.batchUpdate("INSERT_USER", () -> template.execute((ConnectionCallback<int[]>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_USER, new String[]{"user_id"})) {
+                for (User user : users) {
+                    ps.setString(1, user.getEmail());
+                    ps.setString(2, user.getLogin());
+                    ps.setString(3, user.getName());
+                    ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    ps.addBatch();
+                }
+                int[] inserted = ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (User user : users) {
+                        keys.next();
+                        user.setId(keys.getLong(1));
+                        long userId = user.getId();
+                        afterCommit(() -> friendsChanged(userId));
+                    }
+                }
+                return inserted;
+            }
+        }));
+        return users;
+    }
+
     @Override
     public List<User> get() {
-        return template.query(SELECT_ALL, (rs, rowNum) -> makeUser(rs));
+        return sql.query("SELECT_ALL", () -> template.query(SELECT_ALL, (rs, rowNum) -> makeUser(rs)));
+    }
+
+    @Override
+    public List<User> get(Long after, int limit) {
+        return sql.query("SELECT_PAGE", () -> template.query(SELECT_PAGE, (rs, rowNum) -> makeUser(rs), after, limit));
+    }
+
+    @Override
+    public void stream(Consumer<User> action) {
+        sql.record("SELECT_ALL", () -> {
+            long[] rows = new long[1];
+            JdbcStreams.forEach(template, SELECT_ALL, rs -> {
+                while (rs.next()) {
+                    rows[0]++;
+                    action.accept(makeUser(rs));
+                }
+            });
+            return rows[0];
+        }, Long::longValue);
     }
 
     @Override
     public User getUserById(Long id) {
-        return template.queryForObject(SELECT_BY_ID, (rs, rowNum) -> makeUser(rs), id);
+        return sql.queryForObject("SELECT_BY_ID", () ->
+                template.queryForObject(SELECT_BY_ID, (rs, rowNum) -> makeUser(rs), id));
+    }
+
+    @Override
+    public List<User> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, User> usersById = new HashMap<>();
+        for (Long[] chunk : IdChunks.split(ids)) {
+            sql.query("SELECT_BY_IDS", () -> template.query(SELECT_BY_IDS, (rs, rowNum) -> makeUser(rs),
+                    (Object) chunk)).forEach(user -> usersById.put(user.getId(), user));
+        }
+        List<User> users = new ArrayList<>(usersById.size());
+        for (Long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public boolean contains(Long id) {
+        return Boolean.TRUE.equals(sql.queryForObject("EXISTS", () ->
+                template.queryForObject(EXISTS, Boolean.class, id)));
+    }
+
+    @Override
+    public Set<Long> findExisting(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(sql.query("SELECT_EXISTING", () ->
+                template.queryForList(SELECT_EXISTING, Long.class, (Object) ids.toArray(new Long[0]))));
     }
 
     @Override
     public void addFriend(Long user_id, Long friend_id) {
-        template.update(INSERT_FRIEND, user_id, friend_id);
+        sql.update("INSERT_FRIEND", () -> template.update(INSERT_FRIEND, user_id, friend_id));
+        friendsChanged(user_id);
+    }
+
+    @Override
+    public boolean removeFriend(Long user_id, Long friend_id) {
+        boolean removed = sql.update("DELETE_FRIEND", () -> template.update(DELETE_FRIEND, user_id, friend_id)) > 0;
+        friendsChanged(user_id);
+        return removed;
     }
 
     @Override
-    public void removeFriend(Long user_id, Long friend_id) {
-        template.update(DELETE_FRIEND, user_id, friend_id);
+    @Transactional
+    public int[] addFriends(List<Friendship> friendships) {
+        List<Object[]> args = new ArrayList<>(friendships.size());
+        for (Friendship friendship : friendships) {
+            args.add(new Object[]{friendship.getUserId(), friendship.getFriendId()});
+        }
+        int[] inserted = sql.batchUpdate("INSERT_FRIEND", () -> template.batchUpdate(INSERT_FRIEND, args));
+        afterCommit(() -> friendships.forEach(friendship -> friendsChanged(friendship.getUserId())));
+        return inserted;
     }
 
     @Override
     public List<User> getFriends(Long id) {
-        return template.query(SELECT_FRIENDS, (rs, rowNum) -> makeUser(rs), id);
+        return sql.query("SELECT_FRIENDS", () -> template.query(SELECT_FRIENDS, (rs, rowNum) -> makeUser(rs), id));
+    }
+
+    // Списки, которых нет в кэше, читаются из основной базы одним запросом и кладутся в кэш. Пакетная
+    // загрузка не блокирует сброс отдельных ключей, поэтому если за время загрузки чьи-то друзья
+    // изменились, положенные списки сбрасываются: любой из них мог быть прочитан до изменения
+    @Override
+    public Map<Long, long[]> getFriendIds(Collection<Long> ids) {
+        Map<Long, long[]> result = new HashMap<>(friendIds.getAllPresent(ids));
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            if (!result.containsKey(id)) {
+                missing.add(id);
+                result.put(id, SortedArrays.EMPTY);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        long changes = friendsChanges.get();
+        Map<Long, List<Long>> loaded = new HashMap<>();
+        List<long[]> rows = sql.query("SELECT_FRIEND_IDS_BY_USERS", () ->
+                primaryTemplate.query(SELECT_FRIEND_IDS_BY_USERS,
+                        (rs, rowNum) -> new long[]{rs.getLong("user_id"), rs.getLong("friend_id")},
+                        (Object) missing.toArray(new Long[0])));
+        for (long[] row : rows) {
+            loaded.computeIfAbsent(row[0], id -> new ArrayList<>()).add(row[1]);
+        }
+        loaded.forEach((id, friends) -> result.put(id, friends.stream().mapToLong(Long::longValue).toArray()));
+        Map<Long, long[]> cached = new HashMap<>();
+        missing.forEach(id -> cached.put(id, result.get(id)));
+        friendIds.putAll(cached);
+        if (friendsChanges.get() != changes) {
+            friendIds.invalidateAll(missing);
+        }
+        return result;
     }
 
     @Override
     public List<User> getCommonFriends(Long firstUserId, Long secondUserId) {
-        return template.query(SELECT_COM_FRIENDS, (rs, rowNum) -> makeUser(rs), firstUserId, secondUserId);
+        long[] common = SortedArrays.intersect(getFriendIds(firstUserId), getFriendIds(secondUserId));
+        if (common.length == 0) {
+            return new ArrayList<>();
+        }
+        Long[] ids = new Long[common.length];
+        for (int i = 0; i < common.length; i++) {
+            ids[i] = common[i];
+        }
+        return sql.query("SELECT_BY_IDS", () -> template.query(SELECT_BY_IDS, (rs, rowNum) -> makeUser(rs), (Object) ids));
+    }
+
+    // Кэш сбрасывается после записи в базу: загрузка, начатая до записи, завершится раньше сброса.
+    // Подписчики уведомляются после сброса, чтобы пересчет не прочитал из кэша старый список
+    private void friendsChanged(long userId) {
+        friendsChanges.incrementAndGet();
+        friendIds.invalidate(userId);
+        friendshipListeners.forEach(listener -> listener.friendsChanged(userId));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private long[] getFriendIds(Long userId) {
+        return friendIds.get(userId, id -> sql.query("SELECT_FRIEND_IDS", () ->
+                        primaryTemplate.queryForList(SELECT_FRIEND_IDS, Long.class, id)).stream()
+                .mapToLong(Long::longValue)
+                .toArray());
     }
 
     private User makeUser(@NotNull ResultSet rs) throws SQLException {
@@ -0,0 +1,4 @@
+CREATE INDEX IF NOT EXISTS film_likes_user_id_idx ON film_likes (user_id);
+CREATE INDEX IF NOT EXISTS user_friends_friend_id_idx ON user_friends (friend_id);
+CREATE INDEX IF NOT EXISTS films_rating_id_idx ON films (rating_id);
+CREATE INDEX IF NOT EXISTS film_genre_genre_id_idx ON film_genre (genre_id);
@@ -0,0 +1,9 @@
+ALTER TABLE film_likes ADD COLUMN IF NOT EXISTS created_at TIMESTAMP;
+
+-- Время поставленных раньше лайков неизвестно: они считаются давними и в тренды не попадают
+UPDATE film_likes SET created_at = TIMESTAMP '1970-01-01 00:00:00' WHERE created_at IS NULL;
+
+ALTER TABLE film_likes ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE film_likes ALTER COLUMN created_at SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS film_likes_created_at_idx ON film_likes (created_at);
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -10,18 +11,29 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.FilmGenre;
 import ru.yandex.practicum.filmorate.model.FilmRating;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmTrending;
+import ru.yandex.practicum.filmorate.storage.film.impl.LikeMatrix;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -39,6 +51,26 @@ public class FilmControllerTest {
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private LikeMatrix likeMatrix;
+
+    @Autowired
+    private FilmSearchIndex searchIndex;
+
+    @Autowired
+    private FilmTrending trending;
+
+    // Таблицы очищаются скриптом в обход хранилища, поэтому индексы в памяти загружаются заново
+    @BeforeEach
+    public void rebuildIndexes() {
+        likeMatrix.rebuild(filmStorage::streamLikes);
+        searchIndex.rebuild();
+        trending.rebuild(filmStorage::streamLikes);
+    }
+
     @Test
     public void getFilms() throws Exception {
         Film film = new Film();
@@ -59,6 +91,146 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$[0].name", is("film")));
     }
 
+    @Test
+    public void getFilmsWithGenres() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        film.setGenres(List.of(new FilmGenre(1, null), new FilmGenre(3, null)));
+
+        MockHttpServletRequestBuilder mockRequest = postRequest(film);
+        mockMvc.perform(mockRequest);
+
+        Film film2 = new Film();
+        film2.setName("film2");
+        film2.setDescription("desc2");
+        film2.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film2.setDuration(10);
+        film2.setMpa(new FilmRating(2, null));
+
+        mockRequest = postRequest(film2);
+        mockMvc.perform(mockRequest);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].genres", hasSize(2)))
+                .andExpect(jsonPath("$[0].genres[1].name", is("Мультфильм")))
+                .andExpect(jsonPath("$[1].genres", hasSize(0)));
+    }
+
+    @Test
+    public void getFilmsPage() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+
+        mockMvc.perform(postRequest(film));
+        film.setName("film2");
+        mockMvc.perform(postRequest(film));
+        film.setName("film3");
+        mockMvc.perform(postRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].name", is("film2")));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "?after=2&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("film3")));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "?limit=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getFilmsByIds() throws Exception {
+        Film film = new Film();
+        film.setName("film1");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        mockMvc.perform(postRequest(film));
+        film.setName("film2");
+        mockMvc.perform(postRequest(film));
+        film.setName("film3");
+        film.setGenres(List.of(new FilmGenre(1, null), new FilmGenre(2, null)));
+        mockMvc.perform(postRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "?ids=3,9,1,3"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Missing-Ids", "9"))
+                .andExpect(jsonPath("$[*].name", contains("film3", "film1", "film3")))
+                .andExpect(jsonPath("$[0].genres", hasSize(2)))
+                .andExpect(jsonPath("$[1].genres", hasSize(0)));
+
+        // Список длиннее одного запроса к базе
+        StringBuilder ids = new StringBuilder("2");
+        for (int id = 600; id >= 3; id--) {
+            ids.append(',').append(id);
+        }
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "?ids=" + ids))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Missing-Ids", startsWith("600,599,")))
+                .andExpect(jsonPath("$[*].name", contains("film2", "film3")));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "?ids=" + ids + "," + ids))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void streamFilms() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        film.setGenres(List.of(new FilmGenre(1, null), new FilmGenre(2, null)));
+
+        mockMvc.perform(postRequest(film));
+        film.setName("film2");
+        film.setGenres(List.of());
+        mockMvc.perform(postRequest(film));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get(url + "?stream=ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String[] lines = body.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(2, mapper.readValue(lines[0], Film.class).getGenres().size());
+        assertEquals("film2", mapper.readValue(lines[1], Film.class).getName());
+
+        result = mockMvc.perform(MockMvcRequestBuilders.get(url + "?stream=json"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].genres", hasSize(2)))
+                .andExpect(jsonPath("$[1].name", is("film2")));
+    }
+
     @Test
     public void addFilm() throws Exception {
         Film film = new Film();
@@ -220,6 +392,67 @@ public class FilmControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void addLikeTwice() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+
+        mockMvc.perform(postRequest(film));
+        mockMvc.perform(postRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/1/like/1"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/popular?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+    }
+
+    @Test
+    public void addLikeWithUnknownFilmOrUser() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+
+        mockMvc.perform(postRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/-1"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/-1/like/1"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/1/like/-1"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void deleteLike() throws Exception {
         User user = new User();
@@ -311,6 +544,279 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$[1].name", is("film")));
     }
 
+    @Test
+    public void getPopularAfterRemoveLike() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+        mockMvc.perform(postRequest(user));
+
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+
+        mockMvc.perform(postRequest(film));
+        film.setName("film2");
+        mockMvc.perform(postRequest(film));
+        film.setName("film3");
+        mockMvc.perform(postRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/2/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/2/like/2"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/popular"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].name", is("film")))
+                .andExpect(jsonPath("$[1].name", is("film2")))
+                .andExpect(jsonPath("$[2].name", is("film3")));
+    }
+
+    @Test
+    public void getPopularWithFilters() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(postRequest(user));
+        }
+
+        Film film = new Film();
+        film.setName("film1");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(1999, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(3, null));
+        film.setGenres(List.of(new FilmGenre(2, null)));
+        mockMvc.perform(postRequest(film));
+
+        film.setName("film2");
+        film.setGenres(List.of(new FilmGenre(1, null), new FilmGenre(2, null)));
+        film.setMpa(new FilmRating(1, null));
+        mockMvc.perform(postRequest(film));
+
+        film.setName("film3");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setGenres(List.of(new FilmGenre(2, null)));
+        film.setMpa(new FilmRating(3, null));
+        mockMvc.perform(postRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/like/3"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?genreId=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film3", "film2", "film1")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?genreId=2&mpa=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film3", "film1")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?genreId=2&mpa=3&year=1999"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film1")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?year=1999&count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film2")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?genreId=1&year=2000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        // Смена жанров и года переносит фильм в другие рейтинги
+        film.setId(2L);
+        film.setName("film2");
+        film.setMpa(new FilmRating(1, null));
+        film.setGenres(List.of(new FilmGenre(1, null)));
+        mockMvc.perform(putRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?genreId=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film3", "film1")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?genreId=1&year=2000&mpa=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film2")));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?count=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?genreId=2&count=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular?count=1001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getRecommendations() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+        mockMvc.perform(postRequest(user));
+        mockMvc.perform(postRequest(user));
+        mockMvc.perform(postRequest(user));
+
+        Film film = new Film();
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        for (int i = 1; i <= 4; i++) {
+            film.setName("film" + i);
+            mockMvc.perform(postRequest(film));
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/3"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/4/like/3"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film3", "film4")));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1/recommendations?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film3")));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/2/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film2", "film3", "film4")));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/4/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/9/recommendations"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1/recommendations?count=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getTrending() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(postRequest(user));
+        }
+
+        Film film = new Film();
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        for (int i = 1; i <= 3; i++) {
+            film.setName("film" + i);
+            mockMvc.perform(postRequest(film));
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/trending"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/like/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/like/3"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/3"));
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/1/like/3"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/trending?window=1h"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film3", "film2")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/trending?window=7d&count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film3")));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/3/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/3/like/2"));
+        trending.rebuild(filmStorage::streamLikes);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/trending"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("film2", "film3")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/trending?window=2h"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/trending?count=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchFilms() throws Exception {
+        Film film = new Film();
+        film.setName("Матрица");
+        film.setDescription("Хакер узнает правду о мире");
+        film.setReleaseDate(LocalDate.of(1999, 3, 31));
+        film.setDuration(136);
+        film.setMpa(new FilmRating(4, null));
+        mockMvc.perform(postRequest(film));
+
+        film.setName("Матрица: Перезагрузка");
+        film.setDescription("Продолжение истории Нео");
+        mockMvc.perform(postRequest(film));
+
+        film.setName("Терминатор");
+        film.setDescription("Ёлка, будущее и машины, захватившие матрицу мира");
+        mockMvc.perform(postRequest(film));
+
+        film.setName("The Matrix Resurrections");
+        film.setDescription("Neo returns");
+        mockMvc.perform(postRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q=матрица"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(1, 2, 3)));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q=перезагрузка матрица"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(2)));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q=MATR&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4)));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q=елка"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3)));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q=хакер"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(1)));
+
+        film.setId(1L);
+        film.setName("Матрица");
+        film.setDescription("Избранный учится летать");
+        mockMvc.perform(putRequest(film))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q=хакер"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q=избран"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(1)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/search?q= "))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void addGenre() throws Exception {
         Film film = new Film();
@@ -351,6 +857,170 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$.genres[0].id", is(5)));
     }
 
+    @Test
+    public void changeGenrePartially() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        film.setGenres(List.of(new FilmGenre(1, null), new FilmGenre(3, null)));
+
+        mockMvc.perform(postRequest(film));
+
+        film.setId(1L);
+        film.setGenres(List.of(new FilmGenre(5, null), new FilmGenre(3, null), new FilmGenre(5, null)));
+        mockMvc.perform(putRequest(film))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres", hasSize(2)))
+                .andExpect(jsonPath("$.genres[*].id", containsInAnyOrder(3, 5)));
+    }
+
+    @Test
+    public void importFilms() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        film.setGenres(List.of(new FilmGenre(3, null), new FilmGenre(1, null), new FilmGenre(3, null)));
+
+        Film oldFilm = new Film();
+        oldFilm.setName("old");
+        oldFilm.setDescription("desc");
+        oldFilm.setReleaseDate(LocalDate.of(1800, 1, 1));
+        oldFilm.setDuration(10);
+        oldFilm.setMpa(new FilmRating(1, null));
+
+        Film unknownGenre = new Film();
+        unknownGenre.setName("genre");
+        unknownGenre.setDescription("desc");
+        unknownGenre.setReleaseDate(LocalDate.of(2000, 1, 1));
+        unknownGenre.setDuration(10);
+        unknownGenre.setMpa(new FilmRating(1, null));
+        unknownGenre.setGenres(List.of(new FilmGenre(99, null)));
+
+        Film secondFilm = new Film();
+        secondFilm.setName("second");
+        secondFilm.setDescription("desc");
+        secondFilm.setReleaseDate(LocalDate.of(2001, 1, 1));
+        secondFilm.setDuration(20);
+        secondFilm.setMpa(new FilmRating(2, null));
+
+        mockMvc.perform(MockMvcRequestBuilders.post(url + "/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(List.of(film, oldFilm, unknownGenre, secondFilm))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[*].status", contains("CREATED", "INVALID", "INVALID", "CREATED")))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[2].error", is("Жанр с id 99 не найден")))
+                .andExpect(jsonPath("$[3].id", is(2)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].genres[*].id", contains(1, 3)))
+                .andExpect(jsonPath("$[1].name", is("second")));
+    }
+
+    @Test
+    public void importLikes() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+
+        mockMvc.perform(postRequest(film));
+        mockMvc.perform(postRequest(film));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/1"));
+
+        String body = "{\"filmId\":2,\"userId\":1}\n" +
+                "{\"filmId\":1,\"userId\":1}\n" +
+                "{\"filmId\":2,\"userId\":9}\n" +
+                "{\"filmId\":2,\"userId\":1}\n";
+
+        mockMvc.perform(MockMvcRequestBuilders.post(url + "/likes/import")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status", contains("CREATED", "EXISTS", "INVALID", "EXISTS")))
+                .andExpect(jsonPath("$[2].error", is("Пользоветель с id 9 не найден")));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/1/like/1"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/popular?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(2)));
+    }
+
+    @Test
+    public void getFilmsNotModified() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+
+        mockMvc.perform(postRequest(film));
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        String popularEtag = mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/like/1"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/popular").header("If-None-Match", popularEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        film.setId(1L);
+        film.setName("new name");
+        mockMvc.perform(putRequest(film));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$[0].name", is("new name")));
+    }
+
     private MockHttpServletRequestBuilder postRequest(Film film) throws JsonProcessingException {
         return MockMvcRequestBuilders.post(url)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -9,9 +11,11 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.yandex.practicum.filmorate.storage.film.impl.CachedFilmGenreDao;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -27,6 +31,12 @@ public class FilmGenreControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private CachedFilmGenreDao genreCache;
+
+    @Autowired
+    private MeterRegistry registry;
+
     @Test
     public void getGenreById() throws Exception {
         MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.get(url + "/1");
@@ -50,4 +60,52 @@ public class FilmGenreControllerTest {
         mockMvc.perform(mockRequest)
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    public void getGenresNotModified() throws Exception {
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getGenresFromCache() throws Exception {
+        long hits = genreCache.getHits();
+        long misses = genreCache.getMisses();
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Драма")));
+        mockMvc.perform(MockMvcRequestBuilders.get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(6)));
+
+        assertEquals(hits + 2, genreCache.getHits());
+        assertEquals(misses, genreCache.getMisses());
+    }
+
+    @Test
+    public void unknownGenreAnsweredFromCache() throws Exception {
+        long hits = genreCache.getHits();
+        long misses = genreCache.getMisses();
+        long queries = genreQueries();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.get(url + "/999"))
+                    .andExpect(status().isNotFound());
+        }
+
+        assertEquals(hits, genreCache.getHits());
+        assertEquals(misses + 3, genreCache.getMisses());
+        assertEquals(queries, genreQueries());
+    }
+
+    private long genreQueries() {
+        return registry.find("filmorate.sql").tag("dao", "genre").timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
 }
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmPopularityIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FilmPopularityIndexTest {
+
+    private static final Function<Collection<Long>, Map<Long, Long>> NO_RECOUNT = ids -> Map.of();
+
+    private final FilmPopularityIndex index = new FilmPopularityIndex();
+
+    @Test
+    public void changesDuringRebuildAreKept() {
+        index.rebuild(() -> Map.of(1L, 1L, 2L, 1L), NO_RECOUNT);
+
+        index.rebuild(() -> {
+            // Лайки, пришедшие во время загрузки снимка, в него не попали
+            index.addLikes(2L, 5);
+            index.remove(1L);
+            return Map.of(1L, 3L, 2L, 2L, 3L, 4L);
+        }, ids -> Map.of(1L, 0L, 2L, 7L));
+
+        assertEquals(List.of(2L, 3L), index.getPopular(10));
+        assertEquals(7, index.getLikes(2L));
+        assertEquals(0, index.getLikes(1L));
+    }
+
+    @Test
+    public void likeAlreadyInSnapshotIsNotCountedTwice() {
+        index.rebuild(() -> Map.of(1L, 1L, 2L, 3L), NO_RECOUNT);
+        List<Collection<Long>> recounted = new ArrayList<>();
+
+        index.rebuild(() -> {
+            // Лайк закоммичен до запроса снимка, а уведомление о нем пришло во время загрузки
+            Map<Long, Long> snapshot = Map.of(1L, 4L, 2L, 3L);
+            index.addLikes(1L, 1);
+            return snapshot;
+        }, ids -> {
+            recounted.add(new ArrayList<>(ids));
+            return Map.of(1L, 4L);
+        });
+
+        assertEquals(List.of(List.of(1L)), recounted);
+        assertEquals(4, index.getLikes(1L));
+        assertEquals(List.of(1L, 2L), index.getPopular(10));
+    }
+
+    @Test
+    public void failedRecountAppliesChanges() {
+        index.rebuild(() -> Map.of(1L, 1L), NO_RECOUNT);
+
+        try {
+            index.rebuild(() -> {
+                index.addLikes(1L, 2);
+                return Map.of(1L, 1L);
+            }, ids -> {
+                throw new IllegalStateException("база недоступна");
+            });
+        } catch (IllegalStateException e) {
+            // Перечитать не удалось, изменения применены поверх снимка
+        }
+
+        assertEquals(3, index.getLikes(1L));
+    }
+
+    @Test
+    public void failedRebuildKeepsIndex() {
+        index.rebuild(() -> Map.of(1L, 2L), NO_RECOUNT);
+
+        try {
+            index.rebuild(() -> {
+                throw new IllegalStateException("база недоступна");
+            }, NO_RECOUNT);
+        } catch (IllegalStateException e) {
+            // Загрузка не удалась, индекс остается прежним
+        }
+        index.addLikes(1L, 1);
+
+        assertEquals(3, index.getLikes(1L));
+        assertEquals(List.of(1L), index.getPopular(10));
+    }
+
+    @Test
+    public void filtersFollowKeys() {
+        index.rebuild(() -> Map.of(1L, 5L, 2L, 3L), () -> Map.of(
+                1L, new FilmPopularityIndex.Keys(1, 1999, List.of(2)),
+                2L, new FilmPopularityIndex.Keys(3, 1999, List.of(1, 2))), NO_RECOUNT);
+
+        assertEquals(List.of(1L, 2L), index.getPopular(10, 2, null, 1999));
+        assertEquals(List.of(2L), index.getPopular(10, 2, 3, null));
+
+        index.setKeys(1L, new FilmPopularityIndex.Keys(3, 2000, List.of(2)));
+        assertEquals(List.of(2L), index.getPopular(10, null, null, 1999));
+        assertEquals(List.of(1L, 2L), index.getPopular(10, 2, 3, null));
+    }
+}
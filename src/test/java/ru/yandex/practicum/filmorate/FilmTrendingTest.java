@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmTrending;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmTrending.Window;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FilmTrendingTest {
+
+    private final MovableClock clock = new MovableClock(Instant.parse("2022-07-01T10:30:00Z"));
+    private final FilmTrending trending = new FilmTrending(clock);
+
+    @Test
+    public void windowsSlide() {
+        trending.likeAdded(1, 1);
+        trending.likeAdded(1, 2);
+        clock.move(Duration.ofMinutes(30));
+        trending.likeAdded(2, 1);
+
+        assertEquals(List.of(1L, 2L), trending.getTrending(Window.HOUR, 10));
+
+        clock.move(Duration.ofMinutes(31));
+        assertEquals(List.of(2L), trending.getTrending(Window.HOUR, 10));
+        assertEquals(List.of(1L, 2L), trending.getTrending(Window.DAY, 10));
+
+        clock.move(Duration.ofHours(24));
+        assertEquals(List.of(), trending.getTrending(Window.DAY, 10));
+        assertEquals(List.of(1L, 2L), trending.getTrending(Window.WEEK, 10));
+
+        clock.move(Duration.ofDays(7));
+        assertEquals(List.of(), trending.getTrending(Window.WEEK, 10));
+    }
+
+    @Test
+    public void removedLikeLeavesItsBucket() {
+        trending.likeAdded(1, 1);
+        clock.move(Duration.ofHours(2));
+        trending.likeAdded(2, 1);
+        trending.likeAdded(2, 2);
+        trending.likeRemoved(1, 1);
+        trending.likeRemoved(3, 1);
+
+        assertEquals(List.of(2L), trending.getTrending(Window.DAY, 10));
+        assertEquals(List.of(2L), trending.getTrending(Window.HOUR, 10));
+    }
+
+    @Test
+    public void likeRemovedAfterLeavingShorterWindows() {
+        trending.likeAdded(1, 1);
+        trending.likeAdded(2, 1);
+        clock.move(Duration.ofHours(25));
+        trending.likeAdded(2, 2);
+        trending.likeRemoved(1, 1);
+        trending.likeRemoved(2, 1);
+        trending.likeAdded(2, 1);
+
+        assertEquals(List.of(2L), trending.getTrending(Window.WEEK, 10));
+        assertEquals(List.of(2L), trending.getTrending(Window.HOUR, 10));
+
+        clock.move(Duration.ofMinutes(61));
+        trending.likeRemoved(2, 2);
+        assertEquals(List.of(), trending.getTrending(Window.HOUR, 10));
+        assertEquals(List.of(2L), trending.getTrending(Window.DAY, 10));
+
+        clock.move(Duration.ofDays(7));
+        assertEquals(List.of(), trending.getTrending(Window.WEEK, 10));
+    }
+
+    @Test
+    public void rebuildKeepsLikeTimes() {
+        Instant now = clock.instant();
+        trending.rebuild((since, listener) -> {
+            listener.likeAdded(1, 1, now.minus(Duration.ofMinutes(10)));
+            listener.likeAdded(2, 1, now.minus(Duration.ofHours(3)));
+            listener.likeAdded(2, 2, now.minus(Duration.ofHours(4)));
+            listener.likeAdded(3, 1, now.minus(Duration.ofDays(8)));
+        });
+
+        assertEquals(List.of(1L), trending.getTrending(Window.HOUR, 10));
+        assertEquals(List.of(2L, 1L), trending.getTrending(Window.DAY, 10));
+
+        trending.likeRemoved(2, 2);
+        assertEquals(List.of(1L, 2L), trending.getTrending(Window.WEEK, 10));
+    }
+
+    private static final class MovableClock extends Clock {
+
+        private Instant now;
+
+        private MovableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void move(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
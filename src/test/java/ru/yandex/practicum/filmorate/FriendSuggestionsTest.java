@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.impl.FriendSuggestions;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FriendSuggestionsTest {
+
+    private final FriendSuggestions suggestions =
+            new FriendSuggestions(new SimpleMeterRegistry(), 200, 1000, Duration.ofMinutes(10));
+    private final Map<Long, long[]> friends = new HashMap<>();
+    private final Function<Collection<Long>, Map<Long, long[]>> friendIds = ids -> {
+        Map<Long, long[]> result = new HashMap<>();
+        for (Long id : ids) {
+            result.put(id, friends.getOrDefault(id, new long[0]));
+        }
+        return result;
+    };
+
+    @Test
+    public void reloadedSuggestionsKeepDependencies() throws InterruptedException {
+        friends.put(1L, new long[]{2});
+        friends.put(2L, new long[]{1, 3});
+        assertEquals(List.of(3L), suggestions.suggest(1, 10, friendIds));
+
+        // Слушатель удаления выполняется в общем пуле: пока он занят, повторная загрузка успевает раньше,
+        // и слушатель прежнего результата не должен снять ее зависимости
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        CountDownLatch busy = new CountDownLatch(pool.getParallelism());
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < pool.getParallelism(); i++) {
+            pool.execute(() -> {
+                busy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        try {
+            busy.await();
+            suggestions.friendsChanged(1);
+            assertEquals(List.of(3L), suggestions.suggest(1, 10, friendIds));
+        } finally {
+            release.countDown();
+        }
+        pool.awaitQuiescence(1, TimeUnit.SECONDS);
+
+        friends.put(2L, new long[]{1, 4});
+        suggestions.friendsChanged(2);
+        assertEquals(List.of(4L), suggestions.suggest(1, 10, friendIds));
+    }
+}
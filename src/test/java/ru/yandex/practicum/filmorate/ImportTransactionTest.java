@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Пачка импорта пишется в одной транзакции: ошибка в середине не оставляет в базе части пачки
+@SpringBootTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Sql(scripts = "/test-data.sql")
+@Sql(scripts = "/delete-data.sql")
+public class ImportTransactionTest {
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private JdbcTemplate template;
+
+    @Test
+    public void failedUserBatchLeavesNothing() {
+        template.execute("ALTER TABLE users ADD CONSTRAINT reject_users CHECK (login <> 'bad')");
+        try {
+            assertThrows(DataIntegrityViolationException.class,
+                    () -> userStorage.addAll(List.of(user("good"), user("bad"))));
+        } finally {
+            template.execute("ALTER TABLE users DROP CONSTRAINT reject_users");
+        }
+        assertEquals(0, template.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    @Test
+    public void failedFriendBatchLeavesNothing() {
+        userStorage.addAll(List.of(user("first"), user("second")));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> userStorage.addFriends(List.of(friendship(1L, 2L), friendship(1L, 9L))));
+        assertEquals(0, template.queryForObject("SELECT COUNT(*) FROM user_friends", Integer.class));
+        assertEquals(0, userStorage.getFriends(1L).size());
+    }
+
+    private Friendship friendship(Long userId, Long friendId) {
+        Friendship friendship = new Friendship();
+        friendship.setUserId(userId);
+        friendship.setFriendId(friendId);
+        return friendship;
+    }
+
+    private User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
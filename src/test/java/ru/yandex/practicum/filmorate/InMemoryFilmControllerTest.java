@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("in-memory")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class InMemoryFilmControllerTest extends FilmControllerTest {
+}
@@ -0,0 +1,276 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.impl.LikeWriteBehind;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.batch-size=3",
+        "filmorate.likes.write-behind.capacity=4",
+        "filmorate.likes.write-behind.flush-interval=1h"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DirtiesContext
+@Sql(scripts = "/test-data.sql")
+@Sql(scripts = "/delete-data.sql")
+public class LikeWriteBehindTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private JdbcTemplate template;
+
+    @Autowired
+    private LikeWriteBehind writeBehind;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @AfterEach
+    public void flush() {
+        writeBehind.flush();
+    }
+
+    @Test
+    public void popularReflectsPendingLikes() throws Exception {
+        addUser("first");
+        addFilm("first");
+        addFilm("second");
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/2/like/1"))
+                .andExpect(status().isOk());
+
+        assertEquals(1, writeBehind.size());
+        assertEquals(0, countLikes());
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(2, 1)));
+
+        writeBehind.flush();
+
+        assertEquals(0, writeBehind.size());
+        assertEquals(1, countLikes());
+        assertEquals(1, template.queryForObject("SELECT like_count FROM films WHERE film_id = 2", Integer.class));
+    }
+
+    @Test
+    public void addAndRemoveCollapse() throws Exception {
+        addUser("first");
+        addFilm("first");
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/1"));
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/1"));
+        assertEquals(1, writeBehind.size());
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/films/1/like/1"))
+                .andExpect(status().isOk());
+        assertEquals(0, writeBehind.size());
+
+        writeBehind.flush();
+        assertEquals(0, countLikes());
+        assertEquals(0, template.queryForObject("SELECT like_count FROM films WHERE film_id = 1", Integer.class));
+    }
+
+    @Test
+    public void removeStoredLike() throws Exception {
+        addUser("first");
+        addFilm("first");
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/1"));
+        writeBehind.flush();
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/films/1/like/1"))
+                .andExpect(status().isOk());
+        assertEquals(1, writeBehind.size());
+
+        writeBehind.flush();
+        assertEquals(0, countLikes());
+        assertEquals(0, template.queryForObject("SELECT like_count FROM films WHERE film_id = 1", Integer.class));
+    }
+
+    @Test
+    public void flushWhenBatchIsFull() throws Exception {
+        addUser("first");
+        addUser("second");
+        addUser("third");
+        addFilm("first");
+
+        for (int userId = 1; userId <= 3; userId++) {
+            mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/" + userId))
+                    .andExpect(status().isOk());
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countLikes() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, countLikes());
+    }
+
+    @Test
+    public void addLikeWithUnknownFilmOrUser() throws Exception {
+        addUser("first");
+        addFilm("first");
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/9/like/1"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/9"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/films/1/like/9"))
+                .andExpect(status().isNotFound());
+        assertEquals(0, writeBehind.size());
+    }
+
+    @Test
+    public void failedFlushIsRetried() throws Exception {
+        addUser("first");
+        addFilm("first");
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/1"))
+                .andExpect(status().isOk());
+
+        // Запись пачки падает один раз
+        template.execute("ALTER TABLE film_likes ADD CONSTRAINT reject_likes CHECK (film_id < 0)");
+        try {
+            assertThrows(DataIntegrityViolationException.class, writeBehind::flush);
+        } finally {
+            template.execute("ALTER TABLE film_likes DROP CONSTRAINT reject_likes");
+        }
+        assertEquals(1, writeBehind.size());
+        assertEquals(0, countLikes());
+
+        writeBehind.flush();
+        assertEquals(0, writeBehind.size());
+        assertEquals(1, countLikes());
+        assertEquals(1, template.queryForObject("SELECT like_count FROM films WHERE film_id = 1", Integer.class));
+    }
+
+    @Test
+    public void likeOfDeletedUserDoesNotFailBatch() throws Exception {
+        addUser("first");
+        addUser("second");
+        addFilm("first");
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/2"))
+                .andExpect(status().isOk());
+
+        template.update("DELETE FROM users WHERE user_id = 1");
+        writeBehind.flush();
+
+        assertEquals(0, writeBehind.size());
+        assertEquals(1, countLikes());
+        assertEquals(1, template.queryForObject("SELECT like_count FROM films WHERE film_id = 1", Integer.class));
+    }
+
+    @Test
+    public void fullQueueIsRejectedWhileRetryIsPending() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            addUser("user" + i);
+        }
+        addFilm("first");
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/1"))
+                .andExpect(status().isOk());
+
+        template.execute("ALTER TABLE film_likes ADD CONSTRAINT reject_likes CHECK (film_id < 0)");
+        try {
+            assertThrows(DataIntegrityViolationException.class, writeBehind::flush);
+            for (int userId = 2; userId <= 4; userId++) {
+                mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/" + userId))
+                        .andExpect(status().isOk());
+            }
+            // Очередь заполнена, а повтор записи еще не наступил: запрос не идет в базу
+            mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/5"))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            template.execute("ALTER TABLE film_likes DROP CONSTRAINT reject_likes");
+        }
+        assertEquals(4, writeBehind.size());
+
+        writeBehind.flush();
+        mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/5"))
+                .andExpect(status().isOk());
+        writeBehind.flush();
+        assertEquals(5, countLikes());
+    }
+
+    @Test
+    @DirtiesContext
+    public void likesAfterShutdownAreWrittenDirectly() throws Exception {
+        addUser("first");
+        addUser("second");
+        addUser("third");
+        addFilm("first");
+
+        filmStorage.close();
+        for (int userId = 1; userId <= 3; userId++) {
+            mockMvc.perform(MockMvcRequestBuilders.put("/films/1/like/" + userId))
+                    .andExpect(status().isOk());
+        }
+
+        assertEquals(0, writeBehind.size());
+        assertEquals(3, countLikes());
+    }
+
+    private int countLikes() {
+        return template.queryForObject("SELECT COUNT(*) FROM film_likes", Integer.class);
+    }
+
+    private void addUser(String login) throws Exception {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        mockMvc.perform(postRequest("/users", user))
+                .andExpect(status().isOk());
+    }
+
+    private void addFilm(String name) throws Exception {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(10);
+        film.setMpa(new FilmRating(1, null));
+        mockMvc.perform(postRequest("/films", film))
+                .andExpect(status().isOk());
+    }
+
+    private MockHttpServletRequestBuilder postRequest(String url, Object body) throws JsonProcessingException {
+        return MockMvcRequestBuilders.post(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(body));
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Sql(scripts = "/test-data.sql")
+@Sql(scripts = "/delete-data.sql")
+public class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Test
+    public void exposePrometheusMetrics() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/films"))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/genres/1"))
+                .andExpect(status().isOk());
+        long first = addUser("first");
+        long second = addUser("second");
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/" + first + "/friends/common/" + second))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(allOf(
+                        containsString("http_server_requests_seconds_bucket{"),
+                        containsString("uri=\"/films\""),
+                        containsString("filmorate_sql_seconds_count{dao=\"film\",statement=\"SELECT_ALL\""),
+                        containsString("filmorate_sql_seconds{dao=\"film\",statement=\"SELECT_ALL\",quantile=\"0.99\""),
+                        containsString("filmorate_sql_rows_count{dao=\"user\",statement=\"SELECT_FRIEND_IDS\""),
+                        containsString("hikaricp_connections_acquire_seconds"),
+                        containsString("cache_gets_total{cache=\"genres\",result=\"hit\""),
+                        containsString("cache_gets_total{cache=\"friendIds\""))));
+    }
+
+    private long addUser(String login) throws Exception {
+        String json = "{\"email\":\"" + login + "@mail.ru\",\"login\":\"" + login +
+                "\",\"name\":\"" + login + "\",\"birthday\":\"2000-01-01\"}";
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readTree(response).get("id").asLong();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.storage.film.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.impl.UserDbStorage;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+
+@SpringBootTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class QueryPlanTest {
+
+    @Autowired
+    private JdbcTemplate template;
+
+    @Test
+    public void secondaryIndexesExist() {
+        List<String> indexes = template.queryForList("SELECT LOWER(index_name) FROM information_schema.indexes",
+                String.class);
+
+        assertThat(indexes, hasItems("film_likes_user_id_idx", "user_friends_friend_id_idx",
+                "films_rating_id_idx", "film_genre_genre_id_idx", "films_like_count_idx", "film_likes_created_at_idx"));
+    }
+
+    @Test
+    public void filmQueriesUseIndexes() {
+        assertUsesIndex(FilmDbStorage.class, "SELECT_PAGE", 0L, 100);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_BY_ID", 1L);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_BY_IDS", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(FilmDbStorage.class, "SELECT_EXISTING", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(FilmDbStorage.class, "SELECT_EXISTING_USERS", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(FilmDbStorage.class, "SELECT_LIKE_COUNTS_BY_IDS", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(FilmDbStorage.class, "EXISTS", 1L);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_POP", 10);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_POP_FILTERED", 2, 2, 3, 3, 1999, 1999, 10);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_GENRE", 1L);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_GENRES", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(FilmDbStorage.class, "SELECT_GENRE_IDS", 1L);
+        assertUsesIndex(FilmDbStorage.class, "DELETE_LIKE", 1L, 1L);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_LIKE_STATE", 1L, 1L, 1L, 1L);
+        assertUsesIndex(FilmDbStorage.class, "DELETE_GENRE", 1L, 1);
+        assertUsesIndex(FilmDbStorage.class, "SELECT_LIKES_SINCE", Timestamp.from(Instant.now()));
+    }
+
+    @Test
+    public void userQueriesUseIndexes() {
+        assertUsesIndex(UserDbStorage.class, "SELECT_PAGE", 0L, 100);
+        assertUsesIndex(UserDbStorage.class, "SELECT_BY_ID", 1L);
+        assertUsesIndex(UserDbStorage.class, "SELECT_BY_IDS", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(UserDbStorage.class, "SELECT_EXISTING", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(UserDbStorage.class, "EXISTS", 1L);
+        assertUsesIndex(UserDbStorage.class, "SELECT_FRIENDS", 1L);
+        assertUsesIndex(UserDbStorage.class, "SELECT_FRIEND_IDS", 1L);
+        assertUsesIndex(UserDbStorage.class, "SELECT_FRIEND_IDS_BY_USERS", (Object) new Long[]{1L, 2L});
+        assertUsesIndex(UserDbStorage.class, "DELETE_FRIEND", 1L, 2L);
+    }
+
+    @Test
+    public void reverseLookupsUseIndexes() {
+        assertUsesIndex("SELECT film_id FROM film_likes WHERE user_id = ?", 1L);
+        assertUsesIndex("SELECT user_id FROM user_friends WHERE friend_id = ?", 1L);
+        assertUsesIndex("SELECT film_id FROM films WHERE rating_id = ?", 1);
+        assertUsesIndex("SELECT film_id FROM film_genre WHERE genre_id = ?", 1);
+    }
+
+    private void assertUsesIndex(Class<?> storage, String query, Object... params) {
+        assertUsesIndex((String) ReflectionTestUtils.getField(storage, query), params);
+    }
+
+    private void assertUsesIndex(String sql, Object... params) {
+        String plan = template.queryForObject("EXPLAIN " + sql, String.class, params);
+        assertThat(sql, plan, not(containsString("tableScan")));
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive-test?options=DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.flyway.url=jdbc:h2:mem:reactive-test;DB_CLOSE_DELAY=-1;MODE=PostgreSQL"
+})
+@AutoConfigureWebTestClient
+@ActiveProfiles("reactive")
+public class ReactiveApiTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    public void filmsAndLikes() {
+        User user = new User(null, "qwe@mail.com", "qwert", "", LocalDate.of(2000, 1, 1));
+        Long userId = client.post().uri("/users").contentType(MediaType.APPLICATION_JSON).bodyValue(user)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .returnResult().getResponseBody().getId();
+        client.get().uri("/users/" + userId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.name").isEqualTo("qwert");
+
+        Film film = new Film(null, "film", "desc", LocalDate.of(2000, 1, 1), 10, new FilmRating(1, null));
+        film.setGenres(List.of(new FilmGenre(3, null), new FilmGenre(1, null), new FilmGenre(3, null)));
+        client.post().uri("/films").contentType(MediaType.APPLICATION_JSON).bodyValue(film)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.id").isEqualTo(1);
+        film.setGenres(List.of());
+        client.post().uri("/films").contentType(MediaType.APPLICATION_JSON).bodyValue(film)
+                .exchange()
+                .expectStatus().isOk();
+
+        client.get().uri("/films/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.mpa.name").isEqualTo("G")
+                .jsonPath("$.genres[*].id").value(contains(1, 3));
+
+        client.put().uri("/films/2/like/" + userId).exchange().expectStatus().isOk();
+        client.put().uri("/films/2/like/" + userId).exchange().expectStatus().isOk();
+        client.put().uri("/films/2/like/-1").exchange().expectStatus().isNotFound();
+
+        String etag = client.get().uri("/films/popular?count=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].id").value(contains(2, 1))
+                .returnResult().getResponseHeaders().getETag();
+        client.get().uri("/films/popular?count=2").header("If-None-Match", etag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        client.delete().uri("/films/2/like/" + userId).exchange().expectStatus().isOk();
+        client.get().uri("/films/popular?count=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].id").value(contains(1));
+
+        client.get().uri("/films?after=1&limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Next-Cursor", "2")
+                .expectBody().jsonPath("$[*].id").value(contains(2));
+        client.get().uri("/films/9").exchange().expectStatus().isNotFound();
+        client.get().uri("/genres").exchange().expectStatus().isOk().expectBody().jsonPath("$.length()").isEqualTo(6);
+        client.get().uri("/mpa/5").exchange().expectStatus().isOk().expectBody().jsonPath("$.name")
+                .isEqualTo("NC-17");
+    }
+
+    @Test
+    public void commonFriends() {
+        for (String login : List.of("first", "second", "third")) {
+            User user = new User(null, login + "@mail.com", login, login, LocalDate.of(2000, 1, 1));
+            client.post().uri("/users").contentType(MediaType.APPLICATION_JSON).bodyValue(user)
+                    .exchange()
+                    .expectStatus().isOk();
+        }
+        client.get().uri("/users?limit=1").exchange().expectStatus().isOk().expectHeader().exists("X-Next-Cursor");
+
+        Long first = userId("first");
+        Long second = userId("second");
+        Long third = userId("third");
+        client.put().uri("/users/" + first + "/friends/" + third).exchange().expectStatus().isOk();
+        client.put().uri("/users/" + second + "/friends/" + third).exchange().expectStatus().isOk();
+        client.put().uri("/users/" + first + "/friends/-1").exchange().expectStatus().isNotFound();
+
+        client.get().uri("/users/" + first + "/friends/common/" + second)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].login").value(contains("third"));
+
+        client.delete().uri("/users/" + first + "/friends/" + third).exchange().expectStatus().isOk();
+        client.get().uri("/users/" + first + "/friends")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(0);
+    }
+
+    private Long userId(String login) {
+        List<User> users = client.get().uri("/users")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .returnResult().getResponseBody();
+        return users.stream().filter(user -> user.getLogin().equals(login)).findFirst().orElseThrow().getId();
+    }
+}
@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.routing.ReadYourWrites;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "filmorate.datasource.replica.url=jdbc:h2:mem:replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "filmorate.datasource.replica.max-lag=0s"})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class ReplicaRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private JdbcTemplate template;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replica;
+
+    private JdbcTemplate replicaTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        Flyway.configure().dataSource(replica).load().migrate();
+        replicaTemplate = new JdbcTemplate(replica);
+        replicaTemplate.update("DELETE FROM films");
+        readYourWrites.clear();
+    }
+
+    @Test
+    public void readsGoToReplica() throws Exception {
+        replicaTemplate.update("INSERT INTO films (name, description, release_date, duration, rating_id) " +
+                "VALUES ('replica', 'desc', DATE '2000-01-01', 10, 1)");
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"primary\",\"description\":\"desc\",\"releaseDate\":\"2000-01-01\"," +
+                                "\"duration\":10,\"mpa\":{\"id\":1}}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("replica")));
+    }
+
+    @Test
+    public void readYourWritesWithinRequest() {
+        Film film = new Film(null, "primary", "desc", LocalDate.of(2000, 1, 1), 10, new FilmRating(1, null));
+
+        Long id = filmService.add(film).getId();
+        assertEquals("primary", filmService.getById(id).getName());
+
+        readYourWrites.clear();
+        assertThrows(ObjectNotFoundException.class, () -> filmService.getById(id));
+    }
+
+    @Test
+    public void friendCacheLoadsFromPrimary() {
+        addUsersToBoth(1001, 1003);
+        // Реплика еще не получила дружбу, записанную в основную базу
+        template.update("INSERT INTO user_friends (user_id, friend_id) VALUES (1001, 1002), (1003, 1002)");
+        readYourWrites.clear();
+
+        List<User> common = userService.getCommonFriends(1001L, 1003L);
+        assertEquals(1, common.size());
+        assertEquals(1002L, common.get(0).getId());
+    }
+
+    @Test
+    public void friendSuggestionsLoadFromPrimary() {
+        addUsersToBoth(1011, 1013);
+        template.update("INSERT INTO user_friends (user_id, friend_id) VALUES (1011, 1012), (1012, 1013)");
+        readYourWrites.clear();
+
+        List<User> suggestions = userService.getFriendSuggestions(1011L, 10);
+        assertEquals(1, suggestions.size());
+        assertEquals(1013L, suggestions.get(0).getId());
+    }
+
+    @Test
+    public void readsStayOnPrimaryWithinLag() {
+        ReadYourWrites lagging = new ReadYourWrites(Duration.ofMinutes(1));
+        assertFalse(lagging.usePrimary());
+
+        lagging.markWrite();
+        lagging.clear();
+        assertTrue(lagging.usePrimary());
+
+        ReadYourWrites synced = new ReadYourWrites(Duration.ZERO);
+        synced.markWrite();
+        assertTrue(synced.usePrimary());
+
+        synced.clear();
+        assertFalse(synced.usePrimary());
+    }
+
+    private void addUsersToBoth(long from, long to) {
+        for (JdbcTemplate db : List.of(template, replicaTemplate)) {
+            db.update("DELETE FROM user_friends WHERE user_id BETWEEN ? AND ?", from, to);
+            db.update("DELETE FROM users WHERE user_id BETWEEN ? AND ?", from, to);
+            for (long id = from; id <= to; id++) {
+                db.update("INSERT INTO users (user_id, email, login, name, birthday) " +
+                        "VALUES (?, ?, ?, 'name', DATE '2000-01-01')", id, id + "@mail.ru", "login" + id);
+            }
+        }
+    }
+}
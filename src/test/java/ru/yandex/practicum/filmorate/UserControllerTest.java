@@ -10,6 +10,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.yandex.practicum.filmorate.model.User;
@@ -17,7 +18,10 @@ import ru.yandex.practicum.filmorate.model.User;
 import java.time.LocalDate;
 
 import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -54,6 +58,75 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$[0].name", is("Nick")));
     }
 
+    @Test
+    public void getUsersByIds() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        for (int i = 1; i <= 3; i++) {
+            user.setName("Nick" + i);
+            mockMvc.perform(postRequest(user));
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "?ids=2,5,3,4"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Missing-Ids", "5,4"))
+                .andExpect(jsonPath("$[*].name", contains("Nick2", "Nick3")));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(url + "?ids=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Missing-Ids"))
+                .andExpect(jsonPath("$[*].name", contains("Nick1")));
+    }
+
+    @Test
+    public void getUsersPage() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+        user.setName("Nick2");
+        mockMvc.perform(postRequest(user));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "?after=1&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Nick2")));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "?after=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void streamUsers() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+        user.setName("Nick2");
+        mockMvc.perform(postRequest(user));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get(url + "?stream=json"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].name", is("Nick2")));
+    }
+
     @Test
     public void addUser() throws Exception {
         User user = new User();
@@ -204,6 +277,27 @@ public class UserControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void addUnknownFriend() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(url + "/1/friends/-1"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .delete(url + "/-1/friends/1"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/-1/friends"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void deleteFriend() throws Exception {
         User user = new User();
@@ -301,6 +395,146 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$[0].id", is(1)));
     }
 
+    @Test
+    public void importUsers() throws Exception {
+        String body = "{\"email\":\"qwe@mail.com\",\"login\":\"qwert\",\"birthday\":\"2000-01-01\"}\n" +
+                "{\"email\":\"mail\",\"login\":\"bad\",\"birthday\":\"2000-01-01\"}\n" +
+                "{\"email\":\"asd@mail.com\",\"login\":\"as d\",\"birthday\":\"2000-01-01\"}\n" +
+                "{\"email\":\"zxc@mail.com\",\"login\":\"zxc\",\"name\":\"Bob\",\"birthday\":\"2000-01-01\"}\n";
+
+        mockMvc.perform(MockMvcRequestBuilders.post(url + "/import")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status", contains("CREATED", "INVALID", "INVALID", "CREATED")))
+                .andExpect(jsonPath("$[1].error", is("неправильный формат электронной почты")))
+                .andExpect(jsonPath("$[3].id", is(2)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name", is("qwert")))
+                .andExpect(jsonPath("$[1].name", is("Bob")));
+    }
+
+    @Test
+    public void importFriends() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        mockMvc.perform(postRequest(user));
+        mockMvc.perform(postRequest(user));
+        mockMvc.perform(postRequest(user));
+
+        String body = "[{\"userId\":1,\"friendId\":2},{\"userId\":1,\"friendId\":3}," +
+                "{\"userId\":1,\"friendId\":2},{\"userId\":4,\"friendId\":1},null]";
+
+        mockMvc.perform(MockMvcRequestBuilders.post(url + "/friends/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status", contains("CREATED", "CREATED", "EXISTS", "INVALID", "INVALID")))
+                .andExpect(jsonPath("$[3].error", is("Пользоветель с id 4 не найден")));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void getCommonFriendsAfterChange() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        for (int i = 0; i < 4; i++) {
+            mockMvc.perform(postRequest(user));
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/friends/3"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/friends/4"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/friends/4"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends/common/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4)));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/friends/3"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends/common/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 4)));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/1/friends/4"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/2/friends/common/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3)));
+    }
+
+    @Test
+    public void getFriendSuggestions() throws Exception {
+        User user = new User();
+        user.setEmail("qwe@mail.com");
+        user.setLogin("qwert");
+        user.setName("Nick");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(postRequest(user));
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/friends/2"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/friends/3"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/friends/4"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/friends/4"));
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/2/friends/5"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends/suggestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4, 5)));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends/suggestions?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4)));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/3/friends/5"));
+        mockMvc.perform(MockMvcRequestBuilders.delete(url + "/3/friends/4"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends/suggestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(5, 4)));
+
+        mockMvc.perform(MockMvcRequestBuilders.put(url + "/1/friends/4"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends/suggestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(5)));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/5/friends/suggestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/9/friends/suggestions"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(url + "/1/friends/suggestions?count=0"))
+                .andExpect(status().isBadRequest());
+    }
+
     private MockHttpServletRequestBuilder postRequest(User user) throws JsonProcessingException {
         return MockMvcRequestBuilders.post(url)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -26,9 +26,13 @@ CREATE TABLE IF NOT EXISTS films (
 	release_date date,
 	duration int,
 	rating_id INTEGER NOT NULL REFERENCES rating(rating_id) ON DELETE RESTRICT ON UPDATE CASCADE,
+	like_count INTEGER NOT NULL DEFAULT 0,
 	CONSTRAINT film_id_pk PRIMARY KEY (film_id)
 );
 
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INTEGER NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS film_likes (
 	film_id INTEGER NOT NULL REFERENCES films(film_id) ON DELETE CASCADE ON UPDATE CASCADE,
 	user_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE ON UPDATE CASCADE,
@@ -45,4 +49,9 @@ CREATE TABLE IF NOT EXISTS film_genre (
 	film_id INTEGER NOT NULL REFERENCES films(film_id) ON DELETE CASCADE ON UPDATE CASCADE,
 	genre_id INTEGER NOT NULL REFERENCES genres(genre_id) ON DELETE CASCADE ON UPDATE CASCADE,
 	CONSTRAINT film_genre_pk PRIMARY KEY (film_id ,genre_id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS film_likes_user_id_idx ON film_likes (user_id);
+CREATE INDEX IF NOT EXISTS user_friends_friend_id_idx ON user_friends (friend_id);
+CREATE INDEX IF NOT EXISTS films_rating_id_idx ON films (rating_id);
+CREATE INDEX IF NOT EXISTS film_genre_genre_id_idx ON film_genre (genre_id);